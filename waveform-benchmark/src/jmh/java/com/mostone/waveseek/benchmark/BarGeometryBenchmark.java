@@ -0,0 +1,54 @@
+package com.mostone.waveseek.benchmark;
+
+import com.mostone.waveseek.core.BarGeometry;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 小条布局及逐帧更新高度的开销，覆盖常见屏幕宽度和小条尺寸
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class BarGeometryBenchmark {
+
+    @Param({"360", "1080", "1440", "4096"})
+    public int width;
+
+    @Param({"2", "5"})
+    public float barWidth;
+
+    private final BarGeometry geometry = new BarGeometry();
+    private float[] levels;
+
+    @Setup
+    public void setUp() {
+        geometry.layoutPacked(0f, width, barWidth, barWidth);
+        geometry.setVertical(100f, 3f);
+        levels = new float[geometry.barCount()];
+        for (int i = 0; i < levels.length; i++) {
+            levels[i] = (i % 17) / 17f;
+        }
+    }
+
+    @Benchmark
+    public float[] layout() {
+        geometry.layoutPacked(0f, width, barWidth, barWidth);
+        return geometry.lines();
+    }
+
+    @Benchmark
+    public float[] updateHeights() {
+        geometry.setBars(levels, 50f);
+        return geometry.lines();
+    }
+}
@@ -0,0 +1,41 @@
+package com.mostone.waveseek.benchmark;
+
+import java.util.Arrays;
+
+/**
+ * 旧版calcValue的JVM复刻：衰减系数缓存在android.util.SparseArray&lt;Double&gt;中，
+ * 即有序int[]键加装箱的Double值，每次查找都做一次二分查找
+ */
+final class LegacySparseArrayWave {
+
+    private int[] keys = new int[10];
+    private Object[] values = new Object[10];
+    private int size;
+
+    double calcValue(float mapX, float offset) {
+        int keyX = (int) (mapX * 1000);
+        offset %= 2;
+        double sinFunc = Math.sin(Math.PI * mapX - offset * Math.PI);
+        double recessionFunc;
+        int index = Arrays.binarySearch(keys, 0, size, keyX);
+        if (index >= 0) {
+            recessionFunc = (Double) values[index];
+        } else {
+            recessionFunc = 4 / (4 + Math.pow(mapX, 4));
+            put(~index, keyX, recessionFunc);
+        }
+        return sinFunc * recessionFunc;
+    }
+
+    private void put(int index, int key, Double value) {
+        if (size == keys.length) {
+            keys = Arrays.copyOf(keys, size * 2);
+            values = Arrays.copyOf(values, size * 2);
+        }
+        System.arraycopy(keys, index, keys, index + 1, size - index);
+        System.arraycopy(values, index, values, index + 1, size - index);
+        keys[index] = key;
+        values[index] = value;
+        size++;
+    }
+}
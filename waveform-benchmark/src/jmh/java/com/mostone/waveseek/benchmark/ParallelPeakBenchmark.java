@@ -0,0 +1,58 @@
+package com.mostone.waveseek.benchmark;
+
+import com.mostone.waveseek.core.ParallelPeakReducer;
+import com.mostone.waveseek.core.PeakReducer;
+import com.mostone.waveseek.core.Peaks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.InterruptedIOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 60分钟16位单声道PCM的并行归约随并行度的扩展情况，以顺序归约为基线
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class ParallelPeakBenchmark {
+
+    @Param({"1", "2", "4", "8"})
+    public int parallelism;
+
+    @Param({"512"})
+    public int buckets;
+
+    private short[] pcm;
+    private ParallelPeakReducer reducer;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        pcm = PeakExtractionBenchmark.synthesize(60 * 60 * PeakExtractionBenchmark.SAMPLE_RATE);
+        reducer = new ParallelPeakReducer(parallelism);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        reducer.shutdown();
+    }
+
+    @Benchmark
+    public Peaks sequential() {
+        return PeakReducer.reduce(pcm, 1, buckets);
+    }
+
+    @Benchmark
+    public Peaks forkJoin() throws InterruptedIOException {
+        return reducer.reduce(pcm, 1, buckets);
+    }
+}
@@ -0,0 +1,60 @@
+package com.mostone.waveseek.benchmark;
+
+import com.mostone.waveseek.core.PeakReducer;
+import com.mostone.waveseek.core.Peaks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 从内存中的16位单声道PCM提取小条峰值，时长1到60分钟
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class PeakExtractionBenchmark {
+
+    static final int SAMPLE_RATE = 16000;
+
+    @Param({"1", "10", "60"})
+    public int minutes;
+
+    @Param({"512"})
+    public int buckets;
+
+    private short[] pcm;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        pcm = synthesize(minutes * 60 * SAMPLE_RATE);
+    }
+
+    /**
+     * 带随机包络的噪声，近似语音的起伏
+     */
+    static short[] synthesize(int length) {
+        short[] samples = new short[length];
+        Random random = new Random(42);
+        float envelope = 0.5f;
+        for (int i = 0; i < length; i++) {
+            if (i % 1600 == 0) envelope = 0.1f + random.nextFloat() * 0.9f;
+            samples[i] = (short) ((random.nextFloat() * 2 - 1) * envelope * Short.MAX_VALUE);
+        }
+        return samples;
+    }
+
+    @Benchmark
+    public Peaks reduce() {
+        return PeakReducer.reduce(pcm, 1, buckets);
+    }
+}
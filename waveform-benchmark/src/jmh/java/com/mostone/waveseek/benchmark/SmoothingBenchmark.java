@@ -0,0 +1,31 @@
+package com.mostone.waveseek.benchmark;
+
+import com.mostone.waveseek.core.VolumeSmoother;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 音量平滑逐帧更新的开销，目标音量在两个值之间来回切换
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class SmoothingBenchmark {
+
+    private float volume;
+    private int frame;
+
+    @Benchmark
+    public float approach() {
+        float target = (++frame & 64) == 0 ? 90f : 10f;
+        volume = VolumeSmoother.approach(volume, target, 1.75f, 16.6f);
+        return volume;
+    }
+}
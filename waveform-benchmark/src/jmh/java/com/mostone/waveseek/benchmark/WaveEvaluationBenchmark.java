@@ -0,0 +1,91 @@
+package com.mostone.waveseek.benchmark;
+
+import com.mostone.waveseek.core.BarGeometry;
+import com.mostone.waveseek.core.SineWave;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * WaveView逐帧求值的开销：旧版SparseArray缓存 vs 共享的基本类型查找表 vs 预计算相位表
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class WaveEvaluationBenchmark {
+
+    @Param({"72", "288", "1440"})
+    public int bars;
+
+    private float[] mapX;
+    private LegacySparseArrayWave legacy;
+    private final BarGeometry geometry = new BarGeometry();
+    private final SineWave mathSin = new SineWave();
+    private final SineWave sineTable = new SineWave();
+    private final SineWave phaseTable = new SineWave();
+    private float offset;
+
+    @Setup
+    public void setUp() {
+        float width = bars * 10f;
+        geometry.layoutSpread(0f, width, 5f, 5f);
+        geometry.setVertical(100f, 3f);
+        int count = geometry.barCount();
+        mapX = new float[count];
+        for (int i = 0; i < count; i++) {
+            mapX[i] = geometry.left(i) / width * 4 - 2;
+        }
+        legacy = new LegacySparseArrayWave();
+
+        mathSin.setUseSineTable(false);
+        mathSin.layout(geometry, 0f, width);
+        sineTable.layout(geometry, 0f, width);
+        phaseTable.setPhaseSteps(128);
+        phaseTable.layout(geometry, 0f, width);
+    }
+
+    /**
+     * 每次调用相当于一帧，偏移量逐帧前进
+     */
+    private float nextOffset() {
+        offset += 0.025f;
+        if (offset > 1000f) offset = 0f;
+        return offset;
+    }
+
+    @Benchmark
+    public double legacySparseArray() {
+        float offset = nextOffset();
+        double sum = 0;
+        for (float x : mapX) {
+            sum += legacy.calcValue(x, offset);
+        }
+        return sum;
+    }
+
+    @Benchmark
+    public float[] primitiveTablesMathSin() {
+        mathSin.apply(geometry, nextOffset(), 50f);
+        return geometry.lines();
+    }
+
+    @Benchmark
+    public float[] primitiveTablesSineTable() {
+        sineTable.apply(geometry, nextOffset(), 50f);
+        return geometry.lines();
+    }
+
+    @Benchmark
+    public float[] precomputedPhaseTable() {
+        phaseTable.apply(geometry, nextOffset(), 50f);
+        return geometry.lines();
+    }
+}
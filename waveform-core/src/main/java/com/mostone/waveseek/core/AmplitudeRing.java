@@ -0,0 +1,178 @@
+package com.mostone.waveseek.core;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * ================================================
+ * 描    述: 单生产者单消费者的无锁环形缓冲区，把录音线程的振幅传给UI线程
+ * <p>
+ * 生产者(例如AudioRecord的读取线程)按采样率逐个写入振幅，消费者(UI线程)每帧调用一次{@link #drain}，
+ * 把上一帧以来的全部振幅归约为峰值和均方根。每个槽位保存一段振幅的最大值、平方和与数量，
+ * 缓冲区满时生产者把后续振幅合并到本地的一段中，有空位后作为一个槽位写入，
+ * 因此消费者暂停期间不会丢失峰值，均方根也保持精确。
+ * <p>
+ * 两端各自只写自己的下标，通过有序写发布，读写过程无锁、无分配
+ * ================================================
+ */
+public final class AmplitudeRing {
+
+    public static final int DEFAULT_CAPACITY = 1 << 14;
+
+    private final float[] peaks;
+    private final double[] sumSquares;
+    private final int[] counts;
+    private final int mask;
+
+    //下一个写入和读取的位置，只增不减，各自只由一端写入
+    private final AtomicLong tail = new AtomicLong();
+    private final AtomicLong head = new AtomicLong();
+
+    //生产者本地状态：最近一次读到的head，以及缓冲区满时合并中的一段
+    private long cachedHead;
+    private float pendingPeak;
+    private double pendingSumSquares;
+    private int pendingCount;
+
+    //消费者本地状态：最近一次drain的结果
+    private float peak;
+    private float rms;
+
+    public AmplitudeRing() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * @param capacity 槽位数量，向上取为2的幂，通常能容纳几帧的采样即可
+     */
+    public AmplitudeRing(int capacity) {
+        if (capacity <= 0) throw new IllegalArgumentException("capacity <= 0: " + capacity);
+        int size = Integer.highestOneBit(capacity);
+        if (size < capacity) size <<= 1;
+        peaks = new float[size];
+        sumSquares = new double[size];
+        counts = new int[size];
+        mask = size - 1;
+    }
+
+    public int capacity() {
+        return mask + 1;
+    }
+
+    /**
+     * 写入一个振幅，只能在生产者线程调用
+     *
+     * @param amplitude 取绝对值，通常在[0,1]
+     */
+    public void offer(float amplitude) {
+        long t = tail.get();
+        t = write(t, Math.abs(amplitude));
+        tail.lazySet(t);
+    }
+
+    /**
+     * 写入一段16位PCM的每个采样的振幅，整段写完后一次发布，只能在生产者线程调用
+     */
+    public void offer(short[] pcm, int offset, int length) {
+        long t = tail.get();
+        for (int i = offset, end = offset + length; i < end; i++) {
+            t = write(t, Math.abs(pcm[i] / 32768f));
+        }
+        tail.lazySet(t);
+    }
+
+    /**
+     * 写入一段浮点PCM的每个采样的振幅，只能在生产者线程调用
+     */
+    public void offer(float[] pcm, int offset, int length) {
+        long t = tail.get();
+        for (int i = offset, end = offset + length; i < end; i++) {
+            t = write(t, Math.abs(pcm[i]));
+        }
+        tail.lazySet(t);
+    }
+
+    /**
+     * 缓冲区满时合并的振幅在有空位后才会写入，录音结束时调用以发布剩余的振幅，只能在生产者线程调用
+     *
+     * @return 是否已全部发布，false表示缓冲区仍然是满的，需要在消费者取走之后再次调用
+     */
+    public boolean flush() {
+        if (pendingCount == 0) return true;
+        long t = tail.get();
+        if (!hasSpace(t)) return false;
+        t = writeSlot(t, pendingPeak, pendingSumSquares, pendingCount);
+        pendingCount = 0;
+        pendingSumSquares = 0d;
+        tail.lazySet(t);
+        return true;
+    }
+
+    private long write(long t, float amplitude) {
+        if (pendingCount == 0 && hasSpace(t)) {
+            return writeSlot(t, amplitude, (double) amplitude * amplitude, 1);
+        }
+        //缓冲区满，或者之前合并的一段还没写入，继续合并保持顺序
+        if (amplitude > pendingPeak || pendingCount == 0) pendingPeak = amplitude;
+        pendingSumSquares += (double) amplitude * amplitude;
+        pendingCount++;
+        if (hasSpace(t)) {
+            t = writeSlot(t, pendingPeak, pendingSumSquares, pendingCount);
+            pendingCount = 0;
+            pendingSumSquares = 0d;
+        }
+        return t;
+    }
+
+    private boolean hasSpace(long t) {
+        if (t - cachedHead <= mask) return true;
+        cachedHead = head.get();
+        return t - cachedHead <= mask;
+    }
+
+    private long writeSlot(long t, float peak, double sumSquare, int count) {
+        int i = (int) t & mask;
+        peaks[i] = peak;
+        sumSquares[i] = sumSquare;
+        counts[i] = count;
+        return t + 1;
+    }
+
+    /**
+     * 取走上次调用以来的全部振幅并归约，结果见{@link #peak()}和{@link #rms()}，只能在消费者线程调用
+     *
+     * @return 取走的振幅数量，0表示没有新数据，此时结果不变
+     */
+    public long drain() {
+        long h = head.get();
+        long t = tail.get();
+        if (t == h) return 0;
+        float max = 0f;
+        double sum = 0d;
+        long count = 0;
+        for (long j = h; j < t; j++) {
+            int i = (int) j & mask;
+            if (peaks[i] > max) max = peaks[i];
+            sum += sumSquares[i];
+            count += counts[i];
+        }
+        //读完之后才释放槽位
+        head.lazySet(t);
+        peak = max;
+        rms = (float) Math.sqrt(sum / count);
+        return count;
+    }
+
+    /**
+     * @return 最近一次{@link #drain}的最大振幅
+     */
+    public float peak() {
+        return peak;
+    }
+
+    /**
+     * @return 最近一次{@link #drain}的均方根
+     */
+    public float rms() {
+        return rms;
+    }
+}
@@ -0,0 +1,191 @@
+package com.mostone.waveseek.core;
+
+/**
+ * ================================================
+ * 描    述: 小条的几何数据，全部存放在扁平的float数组中
+ * <p>
+ * 布局时确定小条数量和水平位置，逐帧只更新高度。数组只在小条数量增加时扩容，
+ * 更新高度不产生任何分配，上千个小条也可以逐帧计算
+ * <p>
+ * rects中每个小条依次为left, top, right, bottom；
+ * lines中每个小条依次为startX, startY, stopX, stopY，是线宽为小条宽度、线帽为ROUND的竖直线段。
+ * 圆角半径等于小条宽度时，drawRoundRect会把半径限制为宽度的一半，得到两端为半圆的小条，与该线段形状相同
+ * ================================================
+ */
+public final class BarGeometry {
+
+    /**
+     * 每个小条在{@link #rects()}和{@link #lines()}中占用的float数
+     */
+    public static final int STRIDE = 4;
+
+    private int barCount;
+    //可见小条在全部小条中的起始序号和全部小条的数量，只布局可见的小条
+    private int firstBar;
+    private int totalBars;
+    private float barWidth;
+    private float minHeight;
+    private float centerY;
+    private float[] rects = new float[0];
+    private float[] lines = new float[0];
+
+    /**
+     * 小条均匀铺满宽度，首尾各一个，共(width + gap) / (gap + barWidth) + 1个
+     */
+    public void layoutSpread(float left, float width, float barWidth, float gapWidth) {
+        int samplingSize = samplingSize(width, barWidth, gapWidth);
+        float pitch = samplingSize > 0 ? width / samplingSize : 0f;
+        layout(samplingSize + 1, left, pitch, barWidth);
+        firstBar = 0;
+        totalBars = barCount;
+    }
+
+    /**
+     * 小条按固定间距从左侧排列，共(width + gap) / (gap + barWidth)个
+     */
+    public void layoutPacked(float left, float width, float barWidth, float gapWidth) {
+        layout(samplingSize(width, barWidth, gapWidth), left, gapWidth + barWidth, barWidth);
+        firstBar = 0;
+        totalBars = barCount;
+    }
+
+    /**
+     * 小条按固定间距铺满宽度为contentWidth的内容，只布局与可见区域[scrollX, scrollX + width)相交的小条，
+     * 小条数量只与可见宽度有关。内容宽度等于width、scrollX为0时与{@link #layoutPacked}相同
+     *
+     * @param left    可见区域左边界在画布中的x坐标
+     * @param scrollX 可见区域在内容中的起点
+     */
+    public void layoutVisible(float left, float width, float contentWidth, float scrollX,
+                              float barWidth, float gapWidth) {
+        int total = samplingSize(contentWidth, barWidth, gapWidth);
+        float pitch = gapWidth + barWidth;
+        int first = 0;
+        int last = 0;
+        if (total > 0) {
+            //第k个小条占据[k * pitch, k * pitch + barWidth)
+            first = Math.max(0, (int) Math.floor((scrollX - barWidth) / pitch) + 1);
+            last = Math.min(total, (int) Math.ceil((scrollX + width) / pitch));
+        }
+        int count = Math.max(0, last - first);
+        layout(count, left + first * pitch - scrollX, pitch, barWidth);
+        firstBar = count > 0 ? first : 0;
+        totalBars = total;
+    }
+
+    private static int samplingSize(float width, float barWidth, float gapWidth) {
+        if (width <= 0 || gapWidth + barWidth <= 0) return 0;
+        return (int) ((width + gapWidth) / (gapWidth + barWidth));
+    }
+
+    private void layout(int count, float left, float pitch, float barWidth) {
+        int size = count * STRIDE;
+        if (rects.length < size) {
+            rects = new float[size];
+            lines = new float[size];
+        }
+        this.barCount = count;
+        this.barWidth = barWidth;
+        float radius = barWidth / 2;
+        for (int i = 0; i < count; i++) {
+            float x = left + i * pitch;
+            int j = i * STRIDE;
+            rects[j] = x;
+            rects[j + 2] = x + barWidth;
+            lines[j] = x + radius;
+            lines[j + 2] = x + radius;
+        }
+        for (int i = 0; i < count; i++) {
+            setBar(i, 0f);
+        }
+    }
+
+    /**
+     * @param centerY   小条垂直方向的中心
+     * @param minHeight 小条最小高度，振幅为0时的高度
+     */
+    public void setVertical(float centerY, float minHeight) {
+        this.centerY = centerY;
+        this.minHeight = minHeight;
+    }
+
+    /**
+     * 设置第i个小条的半高(不含最小高度)，正负均可
+     */
+    public void setBar(int i, float halfHeight) {
+        float half = Math.abs(halfHeight) + minHeight / 2;
+        float top = centerY - half;
+        float bottom = centerY + half;
+        int j = i * STRIDE;
+        rects[j + 1] = top;
+        rects[j + 3] = bottom;
+
+        float radius = barWidth / 2;
+        float startY = top + radius;
+        float stopY = bottom - radius;
+        //高度不足宽度时退化为一个圆点
+        if (startY > stopY) {
+            startY = stopY = centerY;
+        }
+        lines[j + 1] = startY;
+        lines[j + 3] = stopY;
+    }
+
+    /**
+     * 按归一化的数据设置所有小条，第i个小条的半高为levels[i] * scale
+     *
+     * @param levels 长度不足时，多出的小条按0处理
+     */
+    public void setBars(float[] levels, float scale) {
+        int n = Math.min(barCount, levels.length);
+        for (int i = 0; i < n; i++) {
+            setBar(i, levels[i] * scale);
+        }
+        for (int i = n; i < barCount; i++) {
+            setBar(i, 0f);
+        }
+    }
+
+    public int barCount() {
+        return barCount;
+    }
+
+    /**
+     * @return 第0个已布局的小条在全部小条中的序号
+     */
+    public int firstBar() {
+        return firstBar;
+    }
+
+    /**
+     * @return 全部小条的数量，包括不可见的
+     */
+    public int totalBars() {
+        return totalBars;
+    }
+
+    public float barWidth() {
+        return barWidth;
+    }
+
+    /**
+     * 第i个小条的左边界
+     */
+    public float left(int i) {
+        return rects[i * STRIDE];
+    }
+
+    /**
+     * @return 小条矩形，只有前{@link #barCount()} * {@link #STRIDE}项有效
+     */
+    public float[] rects() {
+        return rects;
+    }
+
+    /**
+     * @return 小条线段，只有前{@link #barCount()} * {@link #STRIDE}项有效
+     */
+    public float[] lines() {
+        return lines;
+    }
+}
@@ -0,0 +1,83 @@
+package com.mostone.waveseek.core;
+
+/**
+ * ================================================
+ * 描    述: 最近若干个小条高度的环形缓冲区，用于录音时从右侧滚入的波形
+ * <p>
+ * 第k个写入的小条固定存放在k % capacity的位置，与绘制缓存中的槽位一一对应，
+ * 新的小条只需要覆盖一个槽位，不需要移动已有的数据
+ * ================================================
+ */
+public final class BarHistory {
+
+    private float[] levels;
+    //写入过的小条总数，包括已被覆盖的
+    private long count;
+    //仍保存着的小条数量，缩小容量后再扩大时可能少于容量
+    private int size;
+
+    public BarHistory(int capacity) {
+        if (capacity < 0) throw new IllegalArgumentException("capacity < 0: " + capacity);
+        levels = new float[capacity];
+    }
+
+    public int capacity() {
+        return levels.length;
+    }
+
+    /**
+     * @return 写入过的小条总数，包括已被覆盖的
+     */
+    public long count() {
+        return count;
+    }
+
+    /**
+     * @return 仍保存在缓冲区中的小条数量
+     */
+    public int size() {
+        return size;
+    }
+
+    public void push(float level) {
+        if (levels.length > 0) levels[slot(count)] = level;
+        count++;
+        size = Math.min(size + 1, levels.length);
+    }
+
+    /**
+     * @param index 写入序号，需在[count() - size(), count())范围内
+     */
+    public float get(long index) {
+        if (index < count - size() || index >= count) {
+            throw new IndexOutOfBoundsException("index " + index + " not in history");
+        }
+        return levels[slot(index)];
+    }
+
+    /**
+     * @return 第index个写入的小条所在的位置
+     */
+    public int slot(long index) {
+        return (int) (index % levels.length);
+    }
+
+    /**
+     * 改变容量，保留最新的小条，写入序号不变
+     */
+    public void resize(int capacity) {
+        if (capacity < 0) throw new IllegalArgumentException("capacity < 0: " + capacity);
+        if (capacity == levels.length) return;
+        float[] old = levels;
+        levels = new float[capacity];
+        size = Math.min(size, capacity);
+        for (long i = count - size; i < count; i++) {
+            levels[slot(i)] = old[(int) (i % old.length)];
+        }
+    }
+
+    public void clear() {
+        count = 0;
+        size = 0;
+    }
+}
@@ -0,0 +1,107 @@
+package com.mostone.waveseek.core;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * ================================================
+ * 描    述: 通过内存映射读取WAV/裸PCM文件，归约为{@link Peaks}
+ * <p>
+ * 文件按固定大小的窗口依次映射，不会整体读入堆中，堆内存只有结果本身，与文件长度无关。
+ * 处理完的窗口不再被引用，其页面可由系统随时回收，1小时的录音也不会常驻内存。
+ * 读取是阻塞的，需在后台线程调用，线程被中断时在窗口之间抛出{@link InterruptedIOException}
+ * ================================================
+ */
+public final class MappedPeakExtractor {
+
+    /**
+     * 默认映射窗口大小
+     */
+    public static final int DEFAULT_WINDOW_BYTES = 4 << 20;
+
+    private MappedPeakExtractor() {
+    }
+
+    /**
+     * @param bucketCount 桶数，通常等于小条数量
+     */
+    public static Peaks extractWav(File file, int bucketCount) throws IOException {
+        return extractWav(file, bucketCount, null);
+    }
+
+    /**
+     * @param reducer 不为null时并行归约
+     */
+    public static Peaks extractWav(File file, int bucketCount, ParallelPeakReducer reducer) throws IOException {
+        RandomAccessFile raf = new RandomAccessFile(file, "r");
+        try {
+            FileChannel channel = raf.getChannel();
+            WavHeader header = WavHeader.read(channel);
+            return extract(channel, header.dataOffset(), header.dataLength(), header.format(),
+                    bucketCount, reducer);
+        } finally {
+            raf.close();
+        }
+    }
+
+    /**
+     * @param file        没有文件头的PCM
+     * @param format      采样格式
+     * @param bucketCount 桶数，通常等于小条数量
+     */
+    public static Peaks extractPcm(File file, PcmFormat format, int bucketCount) throws IOException {
+        return extractPcm(file, format, bucketCount, null);
+    }
+
+    /**
+     * @param reducer 不为null时并行归约
+     */
+    public static Peaks extractPcm(File file, PcmFormat format, int bucketCount,
+                                   ParallelPeakReducer reducer) throws IOException {
+        RandomAccessFile raf = new RandomAccessFile(file, "r");
+        try {
+            FileChannel channel = raf.getChannel();
+            return extract(channel, 0, channel.size(), format, bucketCount, reducer);
+        } finally {
+            raf.close();
+        }
+    }
+
+    private static Peaks extract(FileChannel channel, long offset, long length, PcmFormat format,
+                                 int bucketCount, ParallelPeakReducer reducer) throws IOException {
+        if (reducer != null) {
+            return reducer.extract(channel, offset, length, format, bucketCount, DEFAULT_WINDOW_BYTES);
+        }
+        return extract(channel, offset, length, format, bucketCount, DEFAULT_WINDOW_BYTES);
+    }
+
+    /**
+     * @param offset      PCM数据在文件中的起始位置
+     * @param length      PCM数据字节数，不足一帧的尾部被忽略
+     * @param windowBytes 每次映射的字节数，会向下取整到帧大小的整数倍
+     */
+    public static Peaks extract(FileChannel channel, long offset, long length, PcmFormat format,
+                                int bucketCount, int windowBytes) throws IOException {
+        int frameSize = format.frameSize();
+        long frames = length / frameSize;
+        int window = Math.max(frameSize, windowBytes - windowBytes % frameSize);
+
+        Peaks peaks = new Peaks(bucketCount);
+        PeakAccumulator accumulator = new PeakAccumulator(peaks, frames, format.channels());
+        long end = offset + frames * frameSize;
+        for (long pos = offset; pos < end; pos += window) {
+            if (Thread.interrupted()) {
+                throw new InterruptedIOException("Peak extraction interrupted");
+            }
+            MappedByteBuffer buf = channel.map(FileChannel.MapMode.READ_ONLY, pos, Math.min(window, end - pos));
+            buf.order(format.order());
+            accumulator.acceptPcm(buf, format.encoding());
+        }
+        accumulator.finish();
+        return peaks;
+    }
+}
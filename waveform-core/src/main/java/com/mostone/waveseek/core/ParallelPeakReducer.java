@@ -0,0 +1,212 @@
+package com.mostone.waveseek.core;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * ================================================
+ * 描    述: 用fork-join把长音频按桶切分，在多个核上并行归约为{@link Peaks}
+ * <p>
+ * 切分点总在桶的边界上，每个桶只由一个任务按采样顺序归约，
+ * 因此min/max/RMS与{@link PeakReducer}、{@link MappedPeakExtractor}的顺序结果逐位相同
+ * ================================================
+ */
+public final class ParallelPeakReducer {
+
+    /**
+     * 单个任务至少处理的采样数，更小的范围不再切分
+     */
+    public static final int MIN_SAMPLES_PER_TASK = 1 << 18;
+
+    private final ForkJoinPool pool;
+    private final boolean isOwnPool;
+
+    /**
+     * @param parallelism 并行度，1即在一个工作线程上顺序归约
+     */
+    public ParallelPeakReducer(int parallelism) {
+        this.pool = new ForkJoinPool(parallelism);
+        this.isOwnPool = true;
+    }
+
+    /**
+     * @param threadFactory 例如用于设置工作线程的名称和优先级
+     */
+    public ParallelPeakReducer(int parallelism, ForkJoinPool.ForkJoinWorkerThreadFactory threadFactory) {
+        this.pool = new ForkJoinPool(parallelism, threadFactory, null, false);
+        this.isOwnPool = true;
+    }
+
+    /**
+     * 使用外部的pool，{@link #shutdown()}不会关闭它
+     */
+    public ParallelPeakReducer(ForkJoinPool pool) {
+        this.pool = pool;
+        this.isOwnPool = false;
+    }
+
+    public int getParallelism() {
+        return pool.getParallelism();
+    }
+
+    /**
+     * @param samples     交错存放的16位PCM
+     * @param channels    声道数
+     * @param bucketCount 桶数，通常等于小条数量
+     */
+    public Peaks reduce(final short[] samples, final int channels, int bucketCount) throws InterruptedIOException {
+        Peaks peaks = new Peaks(bucketCount);
+        long frames = samples.length / channels;
+        invokeUnchecked(new Job(peaks, frames, channels) {
+            @Override
+            void reduce(PeakAccumulator accumulator, long fromFrame, long toFrame) {
+                accumulator.acceptPcm16(samples, (int) (fromFrame * channels), (int) ((toFrame - fromFrame) * channels));
+            }
+        });
+        return peaks;
+    }
+
+    /**
+     * @param samples     交错存放的浮点PCM，[-1,1]
+     * @param channels    声道数
+     * @param bucketCount 桶数，通常等于小条数量
+     */
+    public Peaks reduce(final float[] samples, final int channels, int bucketCount) throws InterruptedIOException {
+        Peaks peaks = new Peaks(bucketCount);
+        long frames = samples.length / channels;
+        invokeUnchecked(new Job(peaks, frames, channels) {
+            @Override
+            void reduce(PeakAccumulator accumulator, long fromFrame, long toFrame) {
+                accumulator.acceptFloat(samples, (int) (fromFrame * channels), (int) ((toFrame - fromFrame) * channels));
+            }
+        });
+        return peaks;
+    }
+
+    /**
+     * 与{@link MappedPeakExtractor#extract}相同，每个任务各自按窗口映射自己负责的范围
+     */
+    public Peaks extract(final FileChannel channel, final long offset, long length, final PcmFormat format,
+                         int bucketCount, final int windowBytes) throws IOException {
+        final int frameSize = format.frameSize();
+        final int window = Math.max(frameSize, windowBytes - windowBytes % frameSize);
+        Peaks peaks = new Peaks(bucketCount);
+        invoke(new Job(peaks, length / frameSize, format.channels()) {
+            @Override
+            void reduce(PeakAccumulator accumulator, long fromFrame, long toFrame) throws IOException {
+                long end = offset + toFrame * frameSize;
+                for (long pos = offset + fromFrame * frameSize; pos < end; pos += window) {
+                    if (isCancelled) return;
+                    MappedByteBuffer buf = channel.map(FileChannel.MapMode.READ_ONLY, pos, Math.min(window, end - pos));
+                    buf.order(format.order());
+                    accumulator.acceptPcm(buf, format.encoding());
+                }
+            }
+        });
+        return peaks;
+    }
+
+    /**
+     * 只关闭构造时创建的pool
+     */
+    public void shutdown() {
+        if (isOwnPool) pool.shutdown();
+    }
+
+    private void invokeUnchecked(Job job) throws InterruptedIOException {
+        try {
+            invoke(job);
+        } catch (InterruptedIOException e) {
+            throw e;
+        } catch (IOException e) {
+            //内存中的数据不会产生IO异常
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * 阻塞直到全部完成，当前线程被中断时通知所有任务尽快结束并抛出{@link InterruptedIOException}
+     */
+    private void invoke(Job job) throws IOException {
+        ForkJoinTask<Void> task = pool.submit(new BucketRangeTask(job, 0, job.peaks.size()));
+        try {
+            task.get();
+        } catch (InterruptedException e) {
+            job.isCancelled = true;
+            task.cancel(false);
+            throw new InterruptedIOException("Peak reduction interrupted");
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) throw (RuntimeException) cause;
+            if (cause instanceof Error) throw (Error) cause;
+            throw new IllegalStateException(cause);
+        }
+        if (job.error != null) throw job.error;
+    }
+
+    /**
+     * 一次归约的数据和共享状态，reduce负责把[fromFrame, toFrame)送入accumulator
+     */
+    private abstract static class Job {
+        final Peaks peaks;
+        final long totalFrames;
+        final int channels;
+        final long minFramesPerTask;
+        volatile boolean isCancelled = false;
+        volatile IOException error;
+
+        Job(Peaks peaks, long totalFrames, int channels) {
+            this.peaks = peaks;
+            this.totalFrames = totalFrames;
+            this.channels = channels;
+            this.minFramesPerTask = Math.max(1, MIN_SAMPLES_PER_TASK / channels);
+        }
+
+        abstract void reduce(PeakAccumulator accumulator, long fromFrame, long toFrame) throws IOException;
+
+        long bucketStart(int bucket) {
+            return PeakAccumulator.bucketStart(totalFrames, peaks.size(), bucket);
+        }
+    }
+
+    private static final class BucketRangeTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final Job job;
+        private final int fromBucket;
+        private final int toBucket;
+
+        BucketRangeTask(Job job, int fromBucket, int toBucket) {
+            this.job = job;
+            this.fromBucket = fromBucket;
+            this.toBucket = toBucket;
+        }
+
+        @Override
+        protected void compute() {
+            if (job.isCancelled || job.error != null) return;
+            long fromFrame = job.bucketStart(fromBucket);
+            long toFrame = job.bucketStart(toBucket);
+            if (toBucket - fromBucket > 1 && toFrame - fromFrame > job.minFramesPerTask) {
+                int mid = (fromBucket + toBucket) >>> 1;
+                invokeAll(new BucketRangeTask(job, fromBucket, mid), new BucketRangeTask(job, mid, toBucket));
+                return;
+            }
+            PeakAccumulator accumulator = new PeakAccumulator(job.peaks, job.totalFrames, job.channels,
+                    fromBucket, toBucket);
+            try {
+                job.reduce(accumulator, fromFrame, toFrame);
+            } catch (IOException e) {
+                job.error = e;
+                return;
+            }
+            accumulator.finish();
+        }
+    }
+}
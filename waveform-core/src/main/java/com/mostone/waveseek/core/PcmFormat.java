@@ -0,0 +1,89 @@
+package com.mostone.waveseek.core;
+
+import java.nio.ByteOrder;
+
+/**
+ * ================================================
+ * 描    述: 线性PCM的采样格式，多声道数据按帧交错存放
+ * ================================================
+ */
+public final class PcmFormat {
+
+    public enum Encoding {
+        /**
+         * 8位无符号整数，128为静音
+         */
+        PCM_8(1),
+        PCM_16(2),
+        PCM_24(3),
+        PCM_32(4),
+        /**
+         * 32位浮点，[-1,1]
+         */
+        FLOAT_32(4),
+        /**
+         * 64位浮点，[-1,1]
+         */
+        FLOAT_64(8);
+
+        final int bytesPerSample;
+
+        Encoding(int bytesPerSample) {
+            this.bytesPerSample = bytesPerSample;
+        }
+
+        public int bytesPerSample() {
+            return bytesPerSample;
+        }
+    }
+
+    private final Encoding encoding;
+    private final int channels;
+    private final int sampleRate;
+    private final ByteOrder order;
+
+    /**
+     * 小端字节序，与WAV及Android的PCM一致
+     */
+    public PcmFormat(Encoding encoding, int channels, int sampleRate) {
+        this(encoding, channels, sampleRate, ByteOrder.LITTLE_ENDIAN);
+    }
+
+    public PcmFormat(Encoding encoding, int channels, int sampleRate, ByteOrder order) {
+        if (encoding == null) throw new NullPointerException("encoding == null");
+        if (channels <= 0) throw new IllegalArgumentException("channels <= 0: " + channels);
+        if (sampleRate <= 0) throw new IllegalArgumentException("sampleRate <= 0: " + sampleRate);
+        this.encoding = encoding;
+        this.channels = channels;
+        this.sampleRate = sampleRate;
+        this.order = order;
+    }
+
+    public Encoding encoding() {
+        return encoding;
+    }
+
+    public int channels() {
+        return channels;
+    }
+
+    public int sampleRate() {
+        return sampleRate;
+    }
+
+    public ByteOrder order() {
+        return order;
+    }
+
+    /**
+     * @return 一帧(所有声道各一个采样)占用的字节数
+     */
+    public int frameSize() {
+        return encoding.bytesPerSample * channels;
+    }
+
+    @Override
+    public String toString() {
+        return encoding + " " + channels + "ch " + sampleRate + "Hz " + order;
+    }
+}
@@ -0,0 +1,35 @@
+package com.mostone.waveseek.core;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * ================================================
+ * 描    述: 解码后的PCM数据来源，由{@link PeakPipeline}的解码阶段在单个线程上顺序调用
+ * <p>
+ * 实现可以是Android的MediaCodec，也可以是测试用的合成信号
+ * ================================================
+ */
+public interface PcmSource extends Closeable {
+
+    /**
+     * 把下一段PCM写入dst的[position, limit)，只写入完整的帧，写入后position前移
+     * <p>
+     * 在有数据或者结束之前阻塞，线程被中断时应尽快返回或抛出{@link java.io.InterruptedIOException}
+     *
+     * @return 写入的字节数，数据结束时返回-1
+     */
+    int read(ByteBuffer dst) throws IOException;
+
+    /**
+     * 第一次{@link #read}返回数据之后必须可用，之后不再改变
+     */
+    PcmFormat format();
+
+    /**
+     * 总帧数的估计值，用于划分桶，与{@link #format()}同时可用。
+     * 实际帧数更少时末尾的桶只包含已有的数据，更多时多出的部分被忽略
+     */
+    long estimatedFrames();
+}
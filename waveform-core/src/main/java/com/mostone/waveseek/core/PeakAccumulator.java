@@ -0,0 +1,220 @@
+package com.mostone.waveseek.core;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * ================================================
+ * 描    述: 顺序读入采样，按桶归约为{@link Peaks}
+ * <p>
+ * 总帧数事先已知，第b个桶覆盖帧[totalFrames * b / bucketCount, totalFrames * (b + 1) / bucketCount)。
+ * 多声道数据为交错存放，一帧内所有声道的采样都计入同一个桶。
+ * 采样可以分多次、任意长度送入，归约过程不产生分配，适合分段读取的长音频。
+ * <p>
+ * 也可以只归约一段连续的桶，此时只送入这些桶覆盖的帧。每个桶的结果只取决于桶内采样的顺序，
+ * 因此按桶切分后并行归约的结果与顺序归约完全一致
+ * ================================================
+ */
+public final class PeakAccumulator {
+
+    private final Peaks out;
+    private final long totalFrames;
+    private final int channels;
+    private final int bucketCount;
+    private final int fromBucket;
+    private final int toBucket;
+
+    private int bucket;
+    private long bucketEnd;
+    private long frame;
+    private int channel;
+
+    private float curMin;
+    private float curMax;
+    private double sumSquares;
+    private long sampleCount;
+
+    /**
+     * @param out         归约结果，桶数即out.size()
+     * @param totalFrames 总帧数
+     * @param channels    声道数
+     */
+    public PeakAccumulator(Peaks out, long totalFrames, int channels) {
+        this(out, totalFrames, channels, 0, out.size());
+    }
+
+    /**
+     * 只归约[fromBucket, toBucket)范围内的桶，需从第{@link #bucketStart}(fromBucket)帧开始送入
+     *
+     * @param out         归约结果，桶数即out.size()
+     * @param totalFrames 总帧数
+     * @param channels    声道数
+     */
+    public PeakAccumulator(Peaks out, long totalFrames, int channels, int fromBucket, int toBucket) {
+        if (totalFrames < 0) throw new IllegalArgumentException("totalFrames < 0: " + totalFrames);
+        if (channels <= 0) throw new IllegalArgumentException("channels <= 0: " + channels);
+        if (fromBucket < 0 || toBucket > out.size() || fromBucket > toBucket) {
+            throw new IllegalArgumentException("Invalid bucket range [" + fromBucket + ", " + toBucket
+                    + ") of " + out.size());
+        }
+        this.out = out;
+        this.totalFrames = totalFrames;
+        this.channels = channels;
+        this.bucketCount = out.size();
+        this.fromBucket = fromBucket;
+        this.toBucket = toBucket;
+        bucket = fromBucket;
+        frame = bucketStart(totalFrames, bucketCount, fromBucket);
+        bucketEnd = bucketStart(totalFrames, bucketCount, fromBucket + 1);
+        resetBucket();
+        //帧数少于桶数时，开头可能就有空桶
+        flushEmptyBuckets();
+    }
+
+    /**
+     * 第bucket个桶的起始帧
+     */
+    public static long bucketStart(long totalFrames, int bucketCount, int bucket) {
+        return bucketCount == 0 ? 0 : totalFrames * bucket / bucketCount;
+    }
+
+    /**
+     * 送入一个采样，[-1,1]
+     */
+    public void accept(float sample) {
+        if (sample < curMin) curMin = sample;
+        if (sample > curMax) curMax = sample;
+        sumSquares += (double) sample * sample;
+        sampleCount++;
+        if (++channel == channels) {
+            channel = 0;
+            if (++frame == bucketEnd) {
+                flush();
+                flushEmptyBuckets();
+            }
+        }
+    }
+
+    /**
+     * 送入16位PCM
+     */
+    public void acceptPcm16(short[] samples, int offset, int length) {
+        for (int i = offset, end = offset + length; i < end; i++) {
+            accept(samples[i] / 32768f);
+        }
+    }
+
+    /**
+     * 送入浮点PCM，[-1,1]
+     */
+    public void acceptFloat(float[] samples, int offset, int length) {
+        for (int i = offset, end = offset + length; i < end; i++) {
+            accept(samples[i]);
+        }
+    }
+
+    /**
+     * 送入buf中[position, limit)范围内的PCM，按buf的字节序解码，不改变buf的position
+     *
+     * @param encoding 采样格式，长度不足一个采样的尾部会被忽略
+     */
+    public void acceptPcm(ByteBuffer buf, PcmFormat.Encoding encoding) {
+        int start = buf.position();
+        int end = start + (buf.remaining() - buf.remaining() % encoding.bytesPerSample);
+        boolean bigEndian = buf.order() == ByteOrder.BIG_ENDIAN;
+        switch (encoding) {
+            case PCM_8:
+                for (int i = start; i < end; i++) {
+                    accept(((buf.get(i) & 0xFF) - 128) / 128f);
+                }
+                break;
+            case PCM_16:
+                for (int i = start; i < end; i += 2) {
+                    accept(buf.getShort(i) / 32768f);
+                }
+                break;
+            case PCM_24:
+                for (int i = start; i < end; i += 3) {
+                    int b0 = buf.get(i) & 0xFF;
+                    int b1 = buf.get(i + 1) & 0xFF;
+                    int b2 = buf.get(i + 2) & 0xFF;
+                    //拼到int的高24位再算术右移，完成符号扩展
+                    int v = bigEndian
+                            ? (b0 << 24 | b1 << 16 | b2 << 8) >> 8
+                            : (b2 << 24 | b1 << 16 | b0 << 8) >> 8;
+                    accept(v / 8388608f);
+                }
+                break;
+            case PCM_32:
+                for (int i = start; i < end; i += 4) {
+                    accept((float) (buf.getInt(i) / 2147483648d));
+                }
+                break;
+            case FLOAT_32:
+                for (int i = start; i < end; i += 4) {
+                    accept(buf.getFloat(i));
+                }
+                break;
+            case FLOAT_64:
+                for (int i = start; i < end; i += 8) {
+                    accept((float) buf.getDouble(i));
+                }
+                break;
+        }
+    }
+
+    /**
+     * 数据提前结束时调用，把已读到的部分写入当前桶，剩余的桶置0
+     */
+    public void finish() {
+        while (bucket < toBucket) {
+            flush();
+        }
+    }
+
+    /**
+     * @return 已读入的帧数
+     */
+    public long frames() {
+        return frame - bucketStart(totalFrames, bucketCount, fromBucket);
+    }
+
+    /**
+     * @return 已写入结果的桶数，这些桶之后不会再改变
+     */
+    public int completedBuckets() {
+        return Math.min(bucket, toBucket) - fromBucket;
+    }
+
+    /**
+     * @return 所有桶是否都已写入
+     */
+    public boolean isComplete() {
+        return bucket >= toBucket;
+    }
+
+    private void flushEmptyBuckets() {
+        while (bucket < toBucket && frame == bucketEnd) {
+            flush();
+        }
+    }
+
+    private void flush() {
+        if (bucket >= toBucket) return;
+        if (sampleCount == 0) {
+            out.set(bucket, 0f, 0f, 0f);
+        } else {
+            out.set(bucket, curMin, curMax, (float) Math.sqrt(sumSquares / sampleCount));
+        }
+        bucket++;
+        bucketEnd = bucketStart(totalFrames, bucketCount, bucket + 1);
+        resetBucket();
+    }
+
+    private void resetBucket() {
+        curMin = Float.MAX_VALUE;
+        curMax = -Float.MAX_VALUE;
+        sumSquares = 0;
+        sampleCount = 0;
+    }
+}
@@ -0,0 +1,439 @@
+package com.mostone.waveseek.core;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * ================================================
+ * 描    述: 峰值金字塔的磁盘缓存，每个音频一个文件
+ * <p>
+ * 文件格式(小端)：
+ * <pre>
+ *  0  int   magic "WSPK"
+ *  4  int   版本号{@link #VERSION}
+ *  8  int   文件头长度
+ * 12  int   采样率
+ * 16  int   声道数
+ * 20  int   第0层桶数
+ * 24  int   所有层的桶数之和n
+ * 28  int   第0层均方根的个数，0或第0层桶数
+ * 32  long  总帧数
+ * 40  long  源文件长度，-1表示不校验
+ * 48  long  源文件修改时间，-1表示不校验
+ * 56  long  保留
+ * 64  float[n] 所有层依次存放的min
+ *     float[n] 所有层依次存放的max
+ *     float[]  第0层的均方根
+ * </pre>
+ * 读取时整个文件以只读方式映射，金字塔直接使用映射的内存，命中时只需解析文件头。
+ * 写入先写临时文件并落盘，再原子地替换目标文件，崩溃时不会留下不完整的缓存；
+ * 不支持原子替换的平台上替换过程中读到的缺失文件按未命中处理。
+ * 总大小超过上限时按最近访问时间淘汰最久未使用的文件
+ * ================================================
+ */
+public final class PeakCache {
+
+    public static final int VERSION = 2;
+
+    private static final int MAGIC = 'W' | 'S' << 8 | 'P' << 16 | 'K' << 24;
+    private static final int HEADER_BYTES = 64;
+    private static final String SUFFIX = ".peaks";
+    private static final String TEMP_SUFFIX = ".tmp";
+    //早于该时间的临时文件视为崩溃残留
+    private static final long STALE_TEMP_MILLIS = 60 * 60 * 1000L;
+
+    /**
+     * 缓存的键，可以基于文件的长度和修改时间，也可以基于内容的哈希，或者两者同时使用
+     */
+    public static final class Key {
+        final String name;
+        final long sourceLength;
+        final long sourceModified;
+
+        private Key(String name, long sourceLength, long sourceModified) {
+            this.name = name;
+            this.sourceLength = sourceLength;
+            this.sourceModified = sourceModified;
+        }
+
+        /**
+         * 以路径为键，文件长度或修改时间变化后缓存失效
+         */
+        public static Key forFile(File file) throws IOException {
+            return new Key(hash("file:" + file.getCanonicalPath()), file.length(), file.lastModified());
+        }
+
+        /**
+         * 以内容哈希为键，不同路径的相同内容共享缓存
+         *
+         * @param contentHash 例如服务端下发的文件摘要
+         */
+        public static Key forContent(String contentHash) {
+            return new Key(hash("content:" + contentHash), -1L, -1L);
+        }
+
+        /**
+         * 以内容哈希为键，同时校验本地文件的长度和修改时间
+         */
+        public static Key forContent(String contentHash, File file) {
+            return new Key(hash("content:" + contentHash), file.length(), file.lastModified());
+        }
+
+        private static String hash(String value) {
+            try {
+                byte[] digest = MessageDigest.getInstance("SHA-1").digest(value.getBytes(Charset.forName("UTF-8")));
+                StringBuilder sb = new StringBuilder(digest.length * 2);
+                for (byte b : digest) {
+                    sb.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+                }
+                return sb.toString();
+            } catch (NoSuchAlgorithmException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+    }
+
+    /**
+     * 缓存的内容
+     */
+    public static final class Entry {
+        private final PeakPyramid pyramid;
+        //第0层的均方根，没有时为null
+        private final FloatBuffer rms;
+        private final int sampleRate;
+        private final int channels;
+        private final long frames;
+
+        Entry(PeakPyramid pyramid, FloatBuffer rms, int sampleRate, int channels, long frames) {
+            this.pyramid = pyramid;
+            this.rms = rms;
+            this.sampleRate = sampleRate;
+            this.channels = channels;
+            this.frames = frames;
+        }
+
+        public PeakPyramid pyramid() {
+            return pyramid;
+        }
+
+        /**
+         * 复制出第0层的桶，与写入时的{@link Peaks}相同
+         *
+         * @return 以{@link PeakPyramid}写入、没有均方根时返回null
+         */
+        public Peaks peaks() {
+            if (rms == null) return null;
+            int n = pyramid.baseSize();
+            float[] min = new float[n];
+            float[] max = new float[n];
+            pyramid.baseMinMax(min, max);
+            Peaks peaks = new Peaks(n);
+            for (int i = 0; i < n; i++) peaks.set(i, min[i], max[i], rms.get(i));
+            return peaks;
+        }
+
+        public int sampleRate() {
+            return sampleRate;
+        }
+
+        public int channels() {
+            return channels;
+        }
+
+        public long frames() {
+            return frames;
+        }
+    }
+
+    private final File directory;
+    private final long maxBytes;
+    //文件系统不支持修改时间时，在内存中记录最近访问时间
+    private final Map<String, Long> accessTimes = new HashMap<>();
+
+    /**
+     * @param directory 缓存目录，只存放本缓存的文件
+     * @param maxBytes  所有缓存文件的总大小上限
+     */
+    public PeakCache(File directory, long maxBytes) {
+        this.directory = directory;
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * @return 未命中、已失效或文件损坏时返回null，失效和损坏的文件会被删除
+     */
+    public synchronized Entry get(Key key) throws IOException {
+        File file = fileFor(key);
+        if (!file.isFile()) return null;
+        MappedByteBuffer buf;
+        RandomAccessFile raf;
+        try {
+            raf = new RandomAccessFile(file, "r");
+        } catch (FileNotFoundException e) {
+            //被淘汰或正在被替换
+            return null;
+        }
+        try {
+            //映射在文件关闭后仍然有效
+            buf = raf.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, raf.length());
+        } finally {
+            raf.close();
+        }
+        buf.order(ByteOrder.LITTLE_ENDIAN);
+        Entry entry = parse(buf, key);
+        if (entry == null) {
+            file.delete();
+            return null;
+        }
+        //最近访问时间，用于LRU淘汰
+        long now = System.currentTimeMillis();
+        if (file.setLastModified(now)) {
+            accessTimes.remove(file.getName());
+        } else {
+            accessTimes.put(file.getName(), now);
+        }
+        return entry;
+    }
+
+    private static Entry parse(ByteBuffer buf, Key key) {
+        if (buf.capacity() < HEADER_BYTES
+                || buf.getInt(0) != MAGIC
+                || buf.getInt(4) != VERSION) {
+            return null;
+        }
+        int headerBytes = buf.getInt(8);
+        int baseSize = buf.getInt(20);
+        int totalSize = buf.getInt(24);
+        int rmsSize = buf.getInt(28);
+        if (headerBytes < HEADER_BYTES || baseSize < 0 || totalSize < baseSize
+                || (rmsSize != 0 && rmsSize != baseSize)
+                || buf.capacity() != headerBytes + 8L * totalSize + 4L * rmsSize) {
+            return null;
+        }
+        if (buf.getLong(40) != key.sourceLength || buf.getLong(48) != key.sourceModified) {
+            return null;
+        }
+        buf.position(headerBytes);
+        FloatBuffer min = buf.asFloatBuffer();
+        FloatBuffer max = min.duplicate();
+        max.position(totalSize);
+        PeakPyramid pyramid;
+        try {
+            pyramid = PeakPyramid.wrap(baseSize, min, max);
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+        if (pyramid.totalSize() != totalSize) return null;
+        FloatBuffer rms = null;
+        if (rmsSize > 0) {
+            rms = max.duplicate();
+            rms.position(2 * totalSize);
+            rms = rms.slice();
+        }
+        return new Entry(pyramid, rms, buf.getInt(12), buf.getInt(16), buf.getLong(32));
+    }
+
+    /**
+     * 写入缓存，已有的同名缓存被替换，之后按大小上限淘汰。{@link Entry#peaks()}返回null
+     */
+    public synchronized void put(Key key, PeakPyramid pyramid, int sampleRate, int channels, long frames)
+            throws IOException {
+        write(key, pyramid, null, sampleRate, channels, frames);
+    }
+
+    /**
+     * 以peaks为第0层写入，同时保存均方根，{@link Entry#peaks()}返回与peaks相同的桶
+     */
+    public synchronized void put(Key key, Peaks peaks, int sampleRate, int channels, long frames)
+            throws IOException {
+        write(key, PeakPyramid.build(peaks), peaks, sampleRate, channels, frames);
+    }
+
+    private void write(Key key, PeakPyramid pyramid, Peaks base, int sampleRate, int channels, long frames)
+            throws IOException {
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Cannot create cache directory " + directory);
+        }
+        int totalSize = pyramid.totalSize();
+        int rmsSize = base != null ? base.size() : 0;
+        ByteBuffer buf = ByteBuffer.allocate(HEADER_BYTES + 8 * totalSize + 4 * rmsSize)
+                .order(ByteOrder.LITTLE_ENDIAN);
+        buf.putInt(MAGIC)
+                .putInt(VERSION)
+                .putInt(HEADER_BYTES)
+                .putInt(sampleRate)
+                .putInt(channels)
+                .putInt(pyramid.baseSize())
+                .putInt(totalSize)
+                .putInt(rmsSize)
+                .putLong(frames)
+                .putLong(key.sourceLength)
+                .putLong(key.sourceModified)
+                .putLong(0L);
+        FloatBuffer min = buf.asFloatBuffer();
+        FloatBuffer max = min.duplicate();
+        max.position(totalSize);
+        pyramid.writeTo(min, max);
+        for (int i = 0; i < rmsSize; i++) {
+            buf.putFloat(HEADER_BYTES + 4 * (2 * totalSize + i), base.rms(i));
+        }
+        buf.rewind();
+
+        File target = fileFor(key);
+        File temp = File.createTempFile(key.name, TEMP_SUFFIX, directory);
+        boolean isDone = false;
+        try {
+            RandomAccessFile raf = new RandomAccessFile(temp, "rw");
+            try {
+                FileChannel channel = raf.getChannel();
+                while (buf.hasRemaining()) channel.write(buf);
+                //先落盘再重命名，保证目标文件要么是旧的完整内容，要么是新的完整内容
+                channel.force(true);
+            } finally {
+                raf.close();
+            }
+            replace(temp, target);
+            isDone = true;
+        } finally {
+            if (!isDone) temp.delete();
+        }
+        accessTimes.remove(target.getName());
+        trim(target);
+    }
+
+    /**
+     * 用temp原子地替换target。java.nio.file不可用(Android 8.0以下)时使用renameTo，
+     * 在Linux上同样是原子的替换；只有不允许覆盖的平台才会先删除，期间读到的缺失文件按未命中处理
+     */
+    private static void replace(File temp, File target) throws IOException {
+        if (HAS_NIO_FILES) {
+            try {
+                AtomicMove.move(temp, target);
+                return;
+            } catch (AtomicMoveNotSupportedException e) {
+                //退回renameTo
+            }
+        }
+        if (temp.renameTo(target)) return;
+        target.delete();
+        if (!temp.renameTo(target)) throw new IOException("Cannot rename " + temp + " to " + target);
+    }
+
+    private static final boolean HAS_NIO_FILES = hasNioFiles();
+
+    private static boolean hasNioFiles() {
+        try {
+            Class.forName("java.nio.file.Files");
+            return true;
+        } catch (ClassNotFoundException e) {
+            return false;
+        }
+    }
+
+    /**
+     * 单独的类，java.nio.file不可用时不会被加载
+     */
+    private static final class AtomicMove {
+
+        static void move(File temp, File target) throws IOException {
+            Files.move(temp.toPath(), target.toPath(),
+                    StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    public synchronized void remove(Key key) {
+        File file = fileFor(key);
+        file.delete();
+        accessTimes.remove(file.getName());
+    }
+
+    /**
+     * @return 所有缓存文件的总大小
+     */
+    public synchronized long size() {
+        long size = 0;
+        for (File file : listCacheFiles()) size += file.length();
+        return size;
+    }
+
+    public synchronized void clear() {
+        File[] files = directory.listFiles();
+        if (files == null) return;
+        for (File file : files) file.delete();
+        accessTimes.clear();
+    }
+
+    /**
+     * 删除残留的临时文件，并按最近访问时间从旧到新淘汰，直到总大小不超过上限，刚写入的文件不会被淘汰
+     */
+    private void trim(File keep) {
+        File[] temps = directory.listFiles();
+        if (temps != null) {
+            long now = System.currentTimeMillis();
+            for (File file : temps) {
+                if (file.getName().endsWith(TEMP_SUFFIX) && now - file.lastModified() > STALE_TEMP_MILLIS) {
+                    file.delete();
+                }
+            }
+        }
+
+        File[] files = listCacheFiles();
+        long total = 0;
+        final long[] modified = new long[files.length];
+        Integer[] order = new Integer[files.length];
+        for (int i = 0; i < files.length; i++) {
+            total += files[i].length();
+            Long accessed = accessTimes.get(files[i].getName());
+            modified[i] = Math.max(files[i].lastModified(), accessed != null ? accessed : 0L);
+            order[i] = i;
+        }
+        if (total <= maxBytes) return;
+        //先取出修改时间再排序，避免排序过程中时间变化
+        Arrays.sort(order, new Comparator<Integer>() {
+            @Override
+            public int compare(Integer a, Integer b) {
+                return Long.compare(modified[a], modified[b]);
+            }
+        });
+        for (int i = 0; i < order.length && total > maxBytes; i++) {
+            File file = files[order[i]];
+            if (file.equals(keep)) continue;
+            long length = file.length();
+            if (file.delete()) {
+                total -= length;
+                accessTimes.remove(file.getName());
+            }
+        }
+    }
+
+    private File[] listCacheFiles() {
+        File[] files = directory.listFiles();
+        if (files == null) return new File[0];
+        int n = 0;
+        for (File file : files) {
+            if (file.getName().endsWith(SUFFIX)) files[n++] = file;
+        }
+        return Arrays.copyOf(files, n);
+    }
+
+    private File fileFor(Key key) {
+        return new File(directory, key.name + SUFFIX);
+    }
+}
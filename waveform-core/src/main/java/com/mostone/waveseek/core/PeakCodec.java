@@ -0,0 +1,152 @@
+package com.mostone.waveseek.core;
+
+import java.nio.ByteBuffer;
+import java.nio.FloatBuffer;
+
+/**
+ * ================================================
+ * 描    述: 量化峰值的紧凑编码，用于随音频元数据一起传输和存储
+ * <p>
+ * 字节布局：
+ * <pre>
+ * 0    byte  高4位为版本号{@link #VERSION}，低4位为每个值的位数，4、5或8
+ * 1    u16   值的数量n，大端
+ * 3    n个值按位紧密排列，每个字节从最高位开始填充，最后一个字节不足的低位补0
+ * </pre>
+ * 值为高度[0,1]线性量化后的整数，0对应0，2^bits-1对应1。
+ * 8位时n个小条占3+n字节，5位时约3+n*5/8字节，几百字节即可保存一条语音消息的波形
+ * ================================================
+ */
+public final class PeakCodec {
+
+    public static final int VERSION = 1;
+
+    public static final int HEADER_BYTES = 3;
+
+    /**
+     * 单次编码最多的值的数量
+     */
+    public static final int MAX_COUNT = 0xFFFF;
+
+    private PeakCodec() {
+    }
+
+    /**
+     * @return 编码count个bits位的值所需的字节数，包括头部
+     */
+    public static int encodedSize(int count, int bits) {
+        checkBits(bits);
+        return HEADER_BYTES + (count * bits + 7) / 8;
+    }
+
+    /**
+     * @param levels 高度，[0,1]，超出范围的值被截断
+     * @param bits   每个值的位数，4、5或8
+     */
+    public static byte[] encode(float[] levels, int bits) {
+        byte[] out = new byte[encodedSize(levels.length, bits)];
+        encode(levels, 0, levels.length, bits, ByteBuffer.wrap(out));
+        return out;
+    }
+
+    /**
+     * 把金字塔重采样为count个小条的峰值后编码
+     */
+    public static byte[] encode(PeakPyramid pyramid, int count, int bits) {
+        float[] levels = new float[count];
+        pyramid.peaks(0d, 1d, levels, count);
+        return encode(levels, bits);
+    }
+
+    /**
+     * 把levels[from, from+count)写入dst的当前位置，写入{@link #encodedSize}个字节
+     */
+    public static void encode(float[] levels, int from, int count, int bits, ByteBuffer dst) {
+        checkBits(bits);
+        if (count < 0 || count > MAX_COUNT) throw new IllegalArgumentException("count out of range: " + count);
+        int maxValue = (1 << bits) - 1;
+        dst.put((byte) (VERSION << 4 | bits));
+        dst.putShort((short) count);
+        int acc = 0;
+        int accBits = 0;
+        for (int i = from, end = from + count; i < end; i++) {
+            float level = levels[i];
+            //NaN也截断为0
+            int q = level > 0f ? Math.min(maxValue, Math.round(level * maxValue)) : 0;
+            acc = acc << bits | q;
+            accBits += bits;
+            while (accBits >= 8) {
+                accBits -= 8;
+                dst.put((byte) (acc >>> accBits));
+            }
+            acc &= (1 << accBits) - 1;
+        }
+        if (accBits > 0) dst.put((byte) (acc << (8 - accBits)));
+    }
+
+    /**
+     * 读取src当前位置的头部，不改变position
+     *
+     * @return 值的数量
+     */
+    public static int count(ByteBuffer src) {
+        checkHeader(src);
+        return src.getShort(src.position() + 1) & 0xFFFF;
+    }
+
+    /**
+     * 从src的当前位置解码为高度，src的position移到编码之后，可以连续解码多段
+     *
+     * @param dst 长度不小于{@link #count}
+     * @return 值的数量
+     */
+    public static int decode(ByteBuffer src, float[] dst) {
+        int count = count(src);
+        if (dst.length < count) throw new IllegalArgumentException("dst.length < " + count);
+        return decode(src, FloatBuffer.wrap(dst));
+    }
+
+    /**
+     * 解码到dst的当前位置，dst的position随之移动
+     */
+    static int decode(ByteBuffer src, FloatBuffer dst) {
+        int count = count(src);
+        int bits = src.get(src.position()) & 0xF;
+        if (src.remaining() < encodedSize(count, bits)) {
+            throw new IllegalArgumentException("Truncated peaks: " + src.remaining() + " < "
+                    + encodedSize(count, bits));
+        }
+        src.position(src.position() + HEADER_BYTES);
+        int mask = (1 << bits) - 1;
+        float scale = 1f / mask;
+        if (bits == 8) {
+            for (int i = 0; i < count; i++) dst.put((src.get() & 0xFF) * scale);
+            return count;
+        }
+        int acc = 0;
+        int accBits = 0;
+        for (int i = 0; i < count; i++) {
+            if (accBits < bits) {
+                acc = acc << 8 | (src.get() & 0xFF);
+                accBits += 8;
+            }
+            accBits -= bits;
+            dst.put((acc >>> accBits & mask) * scale);
+            acc &= (1 << accBits) - 1;
+        }
+        return count;
+    }
+
+    private static void checkHeader(ByteBuffer src) {
+        if (src.remaining() < HEADER_BYTES) {
+            throw new IllegalArgumentException("Truncated peaks header: " + src.remaining() + " bytes");
+        }
+        int head = src.get(src.position()) & 0xFF;
+        if (head >>> 4 != VERSION) throw new IllegalArgumentException("Unsupported peaks version: " + (head >>> 4));
+        checkBits(head & 0xF);
+    }
+
+    private static void checkBits(int bits) {
+        if (bits != 4 && bits != 5 && bits != 8) throw new IllegalArgumentException("Unsupported bits: " + bits);
+    }
+}
@@ -0,0 +1,240 @@
+package com.mostone.waveseek.core;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * ================================================
+ * 描    述: 把{@link PcmSource}流式归约为{@link Peaks}，分为三个阶段：
+ * <p>
+ * 1. 解码：在decodeExecutor的线程上从PcmSource读取PCM，写入空闲缓冲区；
+ * 2. 归约：在调用{@link #run}的线程上把已填充的缓冲区送入{@link PeakAccumulator}，再归还缓冲区；
+ * 3. 发布：在监听器的Executor上通知已完成的桶，未处理的通知合并为最新的一次。
+ * <p>
+ * 缓冲区只在创建时分配，在两个有界队列之间循环使用。归约跟不上时解码阶段拿不到空闲缓冲区而阻塞，
+ * 发布跟不上时只会丢掉中间状态，不会拖慢归约。
+ * {@link #cancel()}或中断run所在的线程都会停止两个阶段并关闭PcmSource
+ * ================================================
+ */
+public final class PeakPipeline {
+
+    public interface Listener {
+
+        /**
+         * 在发布阶段的Executor上调用，[0, completedBuckets)范围内的桶已经确定，不会再改变
+         *
+         * @param peaks            与{@link #run}返回的是同一个对象
+         * @param completedBuckets 已完成的桶数，等于peaks.size()时表示全部完成
+         */
+        void onPeaksUpdated(Peaks peaks, int completedBuckets);
+    }
+
+    public static final int DEFAULT_BUFFER_COUNT = 4;
+    public static final int DEFAULT_BUFFER_BYTES = 64 * 1024;
+
+    //解码结束的标记，不参与循环
+    private static final ByteBuffer END_OF_STREAM = ByteBuffer.allocate(0);
+
+    private final PcmSource source;
+    private final Peaks peaks;
+    private final BlockingQueue<ByteBuffer> freeBuffers;
+    //多留一个位置给END_OF_STREAM，保证解码阶段结束时不会阻塞
+    private final BlockingQueue<ByteBuffer> filledBuffers;
+
+    private Listener listener;
+    private Executor listenerExecutor;
+    private final AtomicInteger publishedBuckets = new AtomicInteger();
+    private final AtomicBoolean isPublishScheduled = new AtomicBoolean();
+    private final Runnable publishTask = new Runnable() {
+        @Override
+        public void run() {
+            isPublishScheduled.set(false);
+            listener.onPeaksUpdated(peaks, publishedBuckets.get());
+        }
+    };
+
+    private volatile boolean isCancelled = false;
+    //正在执行两个阶段的线程，由threadLock保护，阶段结束后清除，cancel不会中断已归还线程池的线程
+    private final Object threadLock = new Object();
+    private Thread decodeThread;
+    private Thread reduceThread;
+    private volatile IOException decodeError;
+    //run正常返回后可用
+    private PcmFormat format;
+    private long frames;
+
+    public PeakPipeline(PcmSource source, int bucketCount) {
+        this(source, bucketCount, DEFAULT_BUFFER_COUNT, DEFAULT_BUFFER_BYTES);
+    }
+
+    /**
+     * @param bufferCount 循环使用的缓冲区数量，即解码最多领先归约的块数
+     * @param bufferBytes 每个缓冲区的字节数，至少能放下一帧
+     */
+    public PeakPipeline(PcmSource source, int bucketCount, int bufferCount, int bufferBytes) {
+        if (bufferCount <= 0) throw new IllegalArgumentException("bufferCount <= 0: " + bufferCount);
+        this.source = source;
+        this.peaks = new Peaks(bucketCount);
+        freeBuffers = new ArrayBlockingQueue<>(bufferCount);
+        filledBuffers = new ArrayBlockingQueue<>(bufferCount + 1);
+        for (int i = 0; i < bufferCount; i++) {
+            freeBuffers.add(ByteBuffer.allocateDirect(bufferBytes));
+        }
+    }
+
+    /**
+     * 需在{@link #run}之前设置
+     *
+     * @param executor 发布阶段所在的Executor，例如主线程
+     */
+    public void setListener(Listener listener, Executor executor) {
+        this.listener = listener;
+        this.listenerExecutor = executor;
+    }
+
+    /**
+     * 在当前线程归约，直到数据结束、出错或被取消，只能调用一次
+     *
+     * @param decodeExecutor 解码阶段所在的Executor，需要能立即提供一个线程
+     * @throws InterruptedIOException 被取消或当前线程被中断
+     */
+    public Peaks run(Executor decodeExecutor) throws IOException {
+        synchronized (threadLock) {
+            reduceThread = Thread.currentThread();
+        }
+        decodeExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                decode();
+            }
+        });
+
+        PeakAccumulator accumulator = null;
+        PcmFormat format = null;
+        try {
+            while (true) {
+                ByteBuffer buf = filledBuffers.take();
+                if (buf == END_OF_STREAM) break;
+                if (accumulator == null) {
+                    format = source.format();
+                    long estimatedFrames = source.estimatedFrames();
+                    if (estimatedFrames <= 0) {
+                        //无法划分桶，继续归约只会得到空的波形
+                        stopDecode();
+                        throw new IOException("PcmSource has no frame estimate, cannot divide into buckets");
+                    }
+                    accumulator = new PeakAccumulator(peaks, estimatedFrames, format.channels());
+                }
+                buf.order(format.order());
+                accumulator.acceptPcm(buf, format.encoding());
+                freeBuffers.add(buf);
+                publish(accumulator.completedBuckets());
+            }
+        } catch (InterruptedException e) {
+            cancel();
+            throw new InterruptedIOException("Peak pipeline interrupted");
+        } finally {
+            synchronized (threadLock) {
+                reduceThread = null;
+            }
+        }
+
+        if (isCancelled) throw new InterruptedIOException("Peak pipeline cancelled");
+        IOException error = decodeError;
+        if (error != null) throw error;
+        //没有任何数据时所有桶为0
+        if (accumulator != null) {
+            accumulator.finish();
+            this.format = format;
+            this.frames = accumulator.frames();
+        }
+        publish(peaks.size());
+        return peaks;
+    }
+
+    private void decode() {
+        synchronized (threadLock) {
+            decodeThread = Thread.currentThread();
+        }
+        try {
+            while (!isCancelled) {
+                ByteBuffer buf = freeBuffers.take();
+                buf.clear();
+                if (source.read(buf) < 0) break;
+                buf.flip();
+                filledBuffers.add(buf);
+            }
+        } catch (IOException e) {
+            if (!isCancelled) decodeError = e;
+        } catch (RuntimeException e) {
+            //解码器的运行时异常交给run抛出，不能让它结束解码线程
+            if (!isCancelled) decodeError = new IOException("PcmSource failed", e);
+        } catch (InterruptedException e) {
+            //被取消
+        } finally {
+            synchronized (threadLock) {
+                decodeThread = null;
+                //清除可能残留的中断状态，避免影响线程池中的下一个任务
+                Thread.interrupted();
+            }
+            try {
+                source.close();
+            } catch (IOException e) {
+                if (decodeError == null && !isCancelled) decodeError = e;
+            }
+            filledBuffers.add(END_OF_STREAM);
+        }
+    }
+
+    private void publish(int completedBuckets) {
+        if (listener == null || completedBuckets <= publishedBuckets.get()) return;
+        publishedBuckets.set(completedBuckets);
+        if (isPublishScheduled.compareAndSet(false, true)) {
+            listenerExecutor.execute(publishTask);
+        }
+    }
+
+    /**
+     * 可在任意线程调用，停止解码和归约，{@link #run}随后抛出{@link InterruptedIOException}
+     */
+    public void cancel() {
+        isCancelled = true;
+        synchronized (threadLock) {
+            if (decodeThread != null) decodeThread.interrupt();
+            if (reduceThread != null && reduceThread != Thread.currentThread()) reduceThread.interrupt();
+        }
+    }
+
+    /**
+     * 归约阶段出错时停止解码阶段，不影响{@link #isCancelled()}
+     */
+    private void stopDecode() {
+        synchronized (threadLock) {
+            if (decodeThread != null) decodeThread.interrupt();
+        }
+    }
+
+    public boolean isCancelled() {
+        return isCancelled;
+    }
+
+    /**
+     * @return 解码得到的格式，{@link #run}正常返回后可用，没有任何数据时为null
+     */
+    public PcmFormat format() {
+        return format;
+    }
+
+    /**
+     * @return 实际归约的帧数，{@link #run}正常返回后可用
+     */
+    public long frames() {
+        return frames;
+    }
+}
@@ -0,0 +1,295 @@
+package com.mostone.waveseek.core;
+
+import java.nio.ByteBuffer;
+import java.nio.FloatBuffer;
+
+/**
+ * ================================================
+ * 描    述: 多分辨率的峰值金字塔，类似纹理的mipmap
+ * <p>
+ * 第0层为原始的桶，之后每层把相邻两个桶合并为一个(min取较小、max取较大)，直到只剩一个桶。
+ * 所有层依次存放在同一对FloatBuffer中，总大小约为第0层的两倍，可以是堆上的数组，也可以是映射的缓存文件。
+ * 任意数量的小条、任意可见范围都从桶数最接近且不少于所需数量的层取值，
+ * 耗时与小条数量成正比，不需要重新读取音频，尺寸变化、旋转和缩放都只是内存中的查表
+ * ================================================
+ */
+public final class PeakPyramid {
+
+    private final FloatBuffer min;
+    private final FloatBuffer max;
+    //第level层在数组中的起始位置和桶数
+    private final int[] levelOffset;
+    private final int[] levelSize;
+
+    private PeakPyramid(FloatBuffer min, FloatBuffer max, int[] levelOffset, int[] levelSize) {
+        this.min = min;
+        this.max = max;
+        this.levelOffset = levelOffset;
+        this.levelSize = levelSize;
+    }
+
+    /**
+     * @param base 第0层，桶数越多，放大时越精细，常用数千个
+     */
+    public static PeakPyramid build(Peaks base) {
+        int n = base.size();
+        PeakPyramid pyramid = allocate(n);
+        for (int i = 0; i < n; i++) {
+            pyramid.min.put(i, base.min(i));
+            pyramid.max.put(i, base.max(i));
+        }
+        pyramid.reduceLevels();
+        return pyramid;
+    }
+
+    /**
+     * @param levels 归一化的高度，[0,1]，作为对称的min/max
+     */
+    public static PeakPyramid fromLevels(float[] levels) {
+        int n = levels.length;
+        PeakPyramid pyramid = allocate(n);
+        for (int i = 0; i < n; i++) {
+            pyramid.min.put(i, -levels[i]);
+            pyramid.max.put(i, levels[i]);
+        }
+        pyramid.reduceLevels();
+        return pyramid;
+    }
+
+    /**
+     * 从{@link PeakCodec}的编码直接解码到第0层，作为对称的min/max
+     *
+     * @param encoded 从当前位置开始解码，position移到编码之后
+     */
+    public static PeakPyramid decode(ByteBuffer encoded) {
+        int n = PeakCodec.count(encoded);
+        PeakPyramid pyramid = allocate(n);
+        PeakCodec.decode(encoded, pyramid.max.duplicate());
+        for (int i = 0; i < n; i++) {
+            pyramid.min.put(i, -pyramid.max.get(i));
+        }
+        pyramid.reduceLevels();
+        return pyramid;
+    }
+
+    /**
+     * 全为0的金字塔，用于数据逐段到达的情况，之后由{@link #update}填充
+     */
+    public static PeakPyramid create(int baseSize) {
+        if (baseSize < 0) throw new IllegalArgumentException("baseSize < 0: " + baseSize);
+        return allocate(baseSize);
+    }
+
+    /**
+     * 把base的[from, to)写入第0层，上层只重新计算受影响的桶，耗时与to - from成正比。
+     * 只能用于{@link #create}创建的金字塔
+     *
+     * @param base 桶数与第0层相同
+     */
+    public void update(Peaks base, int from, int to) {
+        if (base.size() != levelSize[0]) {
+            throw new IllegalArgumentException("Expected " + levelSize[0] + " buckets, got " + base.size());
+        }
+        for (int i = from; i < to; i++) {
+            min.put(i, base.min(i));
+            max.put(i, base.max(i));
+        }
+        for (int level = 1; level < levelSize.length && from < to; level++) {
+            from >>= 1;
+            to = (to + 1) >> 1;
+            reduceLevel(level, from, to);
+        }
+    }
+
+    private static PeakPyramid allocate(int baseSize) {
+        int levels = levelCount(baseSize);
+        int[] offset = new int[levels];
+        int[] size = new int[levels];
+        int total = layout(baseSize, offset, size);
+        return new PeakPyramid(FloatBuffer.allocate(total), FloatBuffer.allocate(total), offset, size);
+    }
+
+    /**
+     * 直接使用已有的各层数据，不做拷贝，用于读取{@link PeakCache}
+     *
+     * @param min 从position开始依次存放所有层的min
+     * @param max 从position开始依次存放所有层的max
+     */
+    static PeakPyramid wrap(int baseSize, FloatBuffer min, FloatBuffer max) {
+        int levels = levelCount(baseSize);
+        int[] offset = new int[levels];
+        int[] size = new int[levels];
+        int total = layout(baseSize, offset, size);
+        if (min.remaining() < total || max.remaining() < total) {
+            throw new IllegalArgumentException("Expected " + total + " buckets per level set, got "
+                    + min.remaining() + "/" + max.remaining());
+        }
+        return new PeakPyramid(slice(min, total), slice(max, total), offset, size);
+    }
+
+    private static FloatBuffer slice(FloatBuffer buf, int length) {
+        FloatBuffer slice = buf.slice();
+        slice.limit(length);
+        return slice;
+    }
+
+    /**
+     * @return 所有层的桶数之和，即{@link #writeTo}写入的float数
+     */
+    int totalSize() {
+        return min.limit();
+    }
+
+    /**
+     * 把所有层依次写入dstMin和dstMax的当前位置
+     */
+    void writeTo(FloatBuffer dstMin, FloatBuffer dstMax) {
+        dstMin.put(min.duplicate());
+        dstMax.put(max.duplicate());
+    }
+
+    /**
+     * 复制第0层，用于从{@link PeakCache}还原{@link Peaks}
+     *
+     * @param dstMin 长度不小于{@link #baseSize()}
+     * @param dstMax 长度不小于{@link #baseSize()}
+     */
+    void baseMinMax(float[] dstMin, float[] dstMax) {
+        for (int i = 0; i < levelSize[0]; i++) {
+            dstMin[i] = min.get(i);
+            dstMax[i] = max.get(i);
+        }
+    }
+
+    private static int levelCount(int baseSize) {
+        int levels = 1;
+        for (int n = baseSize; n > 1; n = (n + 1) >> 1) levels++;
+        return levels;
+    }
+
+    /**
+     * @return 所有层的桶数之和
+     */
+    private static int layout(int baseSize, int[] offset, int[] size) {
+        int total = 0;
+        int n = baseSize;
+        for (int level = 0; level < size.length; level++) {
+            offset[level] = total;
+            size[level] = n;
+            total += n;
+            n = (n + 1) >> 1;
+        }
+        return total;
+    }
+
+    private void reduceLevels() {
+        for (int level = 1; level < levelSize.length; level++) {
+            reduceLevel(level, 0, levelSize[level]);
+        }
+    }
+
+    /**
+     * 由下一层重新计算第level层的[from, to)
+     */
+    private void reduceLevel(int level, int from, int to) {
+        int src = levelOffset[level - 1];
+        int srcSize = levelSize[level - 1];
+        int dst = levelOffset[level];
+        for (int i = from; i < to; i++) {
+            int a = src + 2 * i;
+            //桶数为奇数时最后一个桶单独成为上一层的桶
+            int b = 2 * i + 1 < srcSize ? a + 1 : a;
+            min.put(dst + i, Math.min(min.get(a), min.get(b)));
+            max.put(dst + i, Math.max(max.get(a), max.get(b)));
+        }
+    }
+
+    public int levelCount() {
+        return levelSize.length;
+    }
+
+    public int levelSize(int level) {
+        return levelSize[level];
+    }
+
+    /**
+     * @return 第0层的桶数
+     */
+    public int baseSize() {
+        return levelSize[0];
+    }
+
+    /**
+     * 把可见范围[from, to)重采样为count个小条的峰值，即|min|和|max|中的较大者
+     *
+     * @param from  可见范围起点，占全长的比例，[0,1]
+     * @param to    可见范围终点，占全长的比例，[0,1]
+     * @param dst   长度不小于count
+     * @param count 小条数量
+     */
+    public void peaks(double from, double to, float[] dst, int count) {
+        query(from, to, count, null, null, dst);
+    }
+
+    /**
+     * 与{@link #peaks}相同，分别输出min和max
+     */
+    public void minMax(double from, double to, float[] dstMin, float[] dstMax, int count) {
+        query(from, to, count, dstMin, dstMax, null);
+    }
+
+    private void query(double from, double to, int count, float[] dstMin, float[] dstMax, float[] dstPeak) {
+        if (count <= 0) return;
+        if (levelSize[0] == 0 || !(to > from) || from >= 1 || to <= 0) {
+            //没有数据或者空范围
+            for (int i = 0; i < count; i++) write(i, 0f, 0f, dstMin, dstMax, dstPeak);
+            return;
+        }
+        from = Math.max(0d, from);
+        to = Math.min(1d, to);
+        int level = levelFor((to - from) * levelSize[0], count);
+        int offset = levelOffset[level];
+        int size = levelSize[level];
+        double start = from * size;
+        double step = (to - from) * size / count;
+        for (int i = 0; i < count; i++) {
+            int s = Math.min(size - 1, (int) (start + step * i));
+            int e = Math.min(size, (int) Math.ceil(start + step * (i + 1)));
+            //小条比桶多时取所在的桶
+            if (e <= s) e = s + 1;
+            float lo = min.get(offset + s);
+            float hi = max.get(offset + s);
+            for (int j = s + 1; j < e; j++) {
+                float v = min.get(offset + j);
+                if (v < lo) lo = v;
+                v = max.get(offset + j);
+                if (v > hi) hi = v;
+            }
+            write(i, lo, hi, dstMin, dstMax, dstPeak);
+        }
+    }
+
+    private static void write(int i, float lo, float hi, float[] dstMin, float[] dstMax, float[] dstPeak) {
+        if (dstPeak != null) {
+            dstPeak[i] = Math.max(-lo, hi);
+        } else {
+            dstMin[i] = lo;
+            dstMax[i] = hi;
+        }
+    }
+
+    /**
+     * 范围内桶数仍不少于count的最粗的一层，每个小条最多合并约两个桶
+     *
+     * @param baseBuckets 可见范围在第0层覆盖的桶数
+     */
+    private int levelFor(double baseBuckets, int count) {
+        int level = 0;
+        double buckets = baseBuckets;
+        while (level + 1 < levelSize.length && buckets / 2 >= count) {
+            buckets /= 2;
+            level++;
+        }
+        return level;
+    }
+}
@@ -0,0 +1,38 @@
+package com.mostone.waveseek.core;
+
+/**
+ * ================================================
+ * 描    述: 把内存中的整段PCM归约为{@link Peaks}
+ * ================================================
+ */
+public final class PeakReducer {
+
+    private PeakReducer() {
+    }
+
+    /**
+     * @param samples     交错存放的16位PCM
+     * @param channels    声道数
+     * @param bucketCount 桶数，通常等于小条数量
+     */
+    public static Peaks reduce(short[] samples, int channels, int bucketCount) {
+        Peaks peaks = new Peaks(bucketCount);
+        PeakAccumulator accumulator = new PeakAccumulator(peaks, samples.length / channels, channels);
+        accumulator.acceptPcm16(samples, 0, samples.length / channels * channels);
+        accumulator.finish();
+        return peaks;
+    }
+
+    /**
+     * @param samples     交错存放的浮点PCM，[-1,1]
+     * @param channels    声道数
+     * @param bucketCount 桶数，通常等于小条数量
+     */
+    public static Peaks reduce(float[] samples, int channels, int bucketCount) {
+        Peaks peaks = new Peaks(bucketCount);
+        PeakAccumulator accumulator = new PeakAccumulator(peaks, samples.length / channels, channels);
+        accumulator.acceptFloat(samples, 0, samples.length / channels * channels);
+        accumulator.finish();
+        return peaks;
+    }
+}
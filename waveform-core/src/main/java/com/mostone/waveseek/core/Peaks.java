@@ -0,0 +1,81 @@
+package com.mostone.waveseek.core;
+
+/**
+ * ================================================
+ * 描    述: 按桶归约后的波形数据，每个桶保存最小值、最大值和均方根，取值范围[-1,1]
+ * ================================================
+ */
+public final class Peaks {
+
+    private final float[] min;
+    private final float[] max;
+    private final float[] rms;
+
+    public Peaks(int bucketCount) {
+        if (bucketCount < 0) throw new IllegalArgumentException("bucketCount < 0: " + bucketCount);
+        min = new float[bucketCount];
+        max = new float[bucketCount];
+        rms = new float[bucketCount];
+    }
+
+    public int size() {
+        return min.length;
+    }
+
+    public void set(int bucket, float min, float max, float rms) {
+        this.min[bucket] = min;
+        this.max[bucket] = max;
+        this.rms[bucket] = rms;
+    }
+
+    public float min(int bucket) {
+        return min[bucket];
+    }
+
+    public float max(int bucket) {
+        return max[bucket];
+    }
+
+    public float rms(int bucket) {
+        return rms[bucket];
+    }
+
+    /**
+     * @return 第bucket个桶的峰值，即|min|和|max|中的较大者，[0,1]
+     */
+    public float peak(int bucket) {
+        return Math.max(-min[bucket], max[bucket]);
+    }
+
+    /**
+     * 把每个桶的峰值写入levels，可直接作为{@link BarGeometry#setBars}的数据
+     *
+     * @param levels 长度不小于{@link #size()}
+     */
+    public void peaks(float[] levels) {
+        for (int i = 0; i < min.length; i++) {
+            levels[i] = peak(i);
+        }
+    }
+
+    /**
+     * 把src重采样为dst.length个值：缩小时取覆盖范围内的最大值，保留短促的峰值；放大时取最近的值
+     */
+    public static void resample(float[] src, float[] dst) {
+        int n = src.length;
+        int m = dst.length;
+        if (n == 0) {
+            for (int i = 0; i < m; i++) dst[i] = 0f;
+            return;
+        }
+        for (int i = 0; i < m; i++) {
+            int start = (int) ((long) n * i / m);
+            int end = Math.max(start + 1, (int) ((long) n * (i + 1) / m));
+            float level = src[start];
+            for (int j = start + 1; j < end; j++) {
+                if (src[j] > level) level = src[j];
+            }
+            dst[i] = level;
+        }
+    }
+}
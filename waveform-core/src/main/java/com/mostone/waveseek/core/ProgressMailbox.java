@@ -0,0 +1,74 @@
+package com.mostone.waveseek.core;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * ================================================
+ * 描    述: 跨线程传递最新播放进度
+ * <p>
+ * 任意线程都可以以任意频率调用{@link #offer}，只保留最新值；UI线程每帧调用一次{@link #poll}取走它。
+ * 位置和总时长作为一个不可变的整体发布，并发写入时读到的总是同一次写入的两个值。
+ * 整个过程无锁，UI线程取值不分配，多次写入在同一帧内会被合并。
+ * ================================================
+ */
+public final class ProgressMailbox {
+
+    /**
+     * 没有待处理的进度
+     */
+    public static final long NONE = Long.MIN_VALUE;
+
+    //最新一次写入，取走后为null
+    private final AtomicReference<Progress> pending = new AtomicReference<>();
+    //最近一次取到的总时长，只在消费线程访问
+    private long polledDuration = 100;
+    //是否已经安排了一次取值
+    private final AtomicBoolean scheduled = new AtomicBoolean(false);
+
+    /**
+     * 发布最新进度，可在任意线程调用
+     *
+     * @param position 当前位置，不能为{@link #NONE}
+     * @param duration 总时长
+     * @return 调用方是否需要安排一次{@link #poll}，同一时刻最多只有一个调用方得到true
+     */
+    public boolean offer(long position, long duration) {
+        pending.set(new Progress(position, duration));
+        return !scheduled.get() && scheduled.compareAndSet(false, true);
+    }
+
+    /**
+     * 取走最新进度，只能在消费线程(UI线程)调用
+     * <p>
+     * 先清除安排标记再取值，保证取值之后的写入一定会触发新的安排
+     *
+     * @return 最新位置，没有新值时返回{@link #NONE}
+     */
+    public long poll() {
+        scheduled.set(false);
+        Progress progress = pending.getAndSet(null);
+        if (progress == null) return NONE;
+        polledDuration = progress.duration;
+        return progress.position;
+    }
+
+    /**
+     * 只能在消费线程调用
+     *
+     * @return 与最近一次{@link #poll}结果一同发布的总时长
+     */
+    public long duration() {
+        return polledDuration;
+    }
+
+    private static final class Progress {
+        final long position;
+        final long duration;
+
+        Progress(long position, long duration) {
+            this.position = position;
+            this.duration = duration;
+        }
+    }
+}
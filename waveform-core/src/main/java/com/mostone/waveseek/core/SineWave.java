@@ -0,0 +1,144 @@
+package com.mostone.waveseek.core;
+
+/**
+ * ================================================
+ * 描    述: 向右移动的衰减正弦波，WaveView的小条高度
+ * <p>
+ * y = sin(πx - π·offset) · 4 / (4 + x^4)，x为采样点映射到[-2,2]后的值，offset以2为周期
+ * ================================================
+ */
+public final class SineWave {
+
+    private int barCount;
+    //采样点位置映射到[-2,2]之间
+    private float[] mapX = new float[0];
+    //每个采样点的衰变系数，布局时从共享表取出
+    private float[] recession = new float[0];
+    //是否使用正弦查找表
+    private boolean useSineTable = true;
+    //预计算的一个周期内的相位数，0表示逐帧计算
+    private int phaseSteps = 0;
+    //预计算的小条高度表
+    private float[] phaseTable;
+
+    /**
+     * 根据小条的位置计算采样点映射，小条布局变化后需要重新调用
+     *
+     * @param geometry 已完成布局的小条
+     * @param left     波形区域左边界
+     * @param width    波形区域宽度
+     */
+    public void layout(BarGeometry geometry, float left, float width) {
+        barCount = geometry.barCount();
+        if (mapX.length < barCount) {
+            mapX = new float[barCount];
+            recession = new float[barCount];
+        }
+        for (int i = 0; i < barCount; i++) {
+            float x = geometry.left(i) - left;
+            //将采样点映射到[-2，2]
+            mapX[i] = width > 0 ? (x / width) * 4 - 2 : 0f;
+            recession[i] = WaveTables.recession(mapX[i]);
+        }
+        buildPhaseTable();
+    }
+
+    /**
+     * 计算第i个采样点对应的y值
+     *
+     * @param i      采样点下标
+     * @param offset 偏移量
+     * @return [-1, 1]
+     */
+    public float value(int i, float offset) {
+        offset %= 2;
+        float sinFunc = useSineTable
+                ? WaveTables.sinPi(mapX[i] - offset)
+                : (float) Math.sin(Math.PI * mapX[i] - offset * Math.PI);
+        return sinFunc * recession[i];
+    }
+
+    /**
+     * 按当前偏移量更新所有小条的高度，不产生分配
+     *
+     * @param offset 偏移量
+     * @param scale  y值到小条半高的缩放
+     */
+    public void apply(BarGeometry geometry, float offset, float scale) {
+        int n = Math.min(barCount, geometry.barCount());
+        if (phaseTable == null) {
+            for (int i = 0; i < n; i++) {
+                geometry.setBar(i, value(i, offset) * scale);
+            }
+            return;
+        }
+        //当前相位对应的两行及插值比例
+        float phase = offset % 2;
+        if (phase < 0) phase += 2;
+        float step = phase / 2 * phaseSteps;
+        int k = (int) step;
+        float fraction = step - k;
+        if (k >= phaseSteps) k = 0;
+        int row0 = k * barCount;
+        int row1 = (k + 1 == phaseSteps ? 0 : k + 1) * barCount;
+        for (int i = 0; i < n; i++) {
+            float y0 = phaseTable[row0 + i];
+            geometry.setBar(i, (y0 + (phaseTable[row1 + i] - y0) * fraction) * scale);
+        }
+    }
+
+    /**
+     * 波形以offset为2的周期循环，且采样点在布局后固定，
+     * 因此可以预先算出一个周期内phaseSteps个相位下每个采样点的值，逐帧只需查表插值
+     * <p>
+     * 表按相位分行存放：phaseTable[step * barCount + i]
+     */
+    private void buildPhaseTable() {
+        if (phaseSteps <= 0 || barCount == 0) {
+            phaseTable = null;
+            return;
+        }
+        int size = phaseSteps * barCount;
+        if (phaseTable == null || phaseTable.length != size) {
+            phaseTable = new float[size];
+        }
+        for (int k = 0; k < phaseSteps; k++) {
+            float offset = 2f * k / phaseSteps;
+            int row = k * barCount;
+            for (int i = 0; i < barCount; i++) {
+                phaseTable[row + i] = value(i, offset);
+            }
+        }
+    }
+
+    /**
+     * @param steps 一个周期内预计算的相位数，0表示逐帧计算
+     */
+    public void setPhaseSteps(int steps) {
+        steps = steps < 0 ? 0 : steps;
+        if (steps == phaseSteps) return;
+        this.phaseSteps = steps;
+        buildPhaseTable();
+    }
+
+    public int getPhaseSteps() {
+        return phaseSteps;
+    }
+
+    /**
+     * @return 逐帧是否由预计算表提供
+     */
+    public boolean hasPhaseTable() {
+        return phaseTable != null;
+    }
+
+    public void setUseSineTable(boolean useSineTable) {
+        if (this.useSineTable == useSineTable) return;
+        this.useSineTable = useSineTable;
+        buildPhaseTable();
+    }
+
+    public boolean isUseSineTable() {
+        return useSineTable;
+    }
+}
@@ -0,0 +1,45 @@
+package com.mostone.waveseek.core;
+
+/**
+ * ================================================
+ * 描    述: 按时间平滑改变音量
+ * <p>
+ * 原实现每绘制一帧移动一个perVolume，动画速度随帧率变化；
+ * 这里把perVolume视为每{@link #REFERENCE_FRAME_MILLIS}毫秒的变化量，按实际经过的时间移动
+ * ================================================
+ */
+public final class VolumeSmoother {
+
+    /**
+     * perVolume对应的时间间隔，即原先固定的20ms重绘间隔
+     */
+    public static final float REFERENCE_FRAME_MILLIS = 20f;
+
+    private VolumeSmoother() {
+    }
+
+    /**
+     * 使曲线振幅有较大改变时动画过渡自然
+     *
+     * @param volume        当前音量
+     * @param targetVolume  目标音量
+     * @param perVolume     每{@link #REFERENCE_FRAME_MILLIS}毫秒的变化量
+     * @param elapsedMillis 距上次计算经过的时间
+     * @return 新的音量
+     */
+    public static float approach(float volume, float targetVolume, float perVolume, float elapsedMillis) {
+        float step = perVolume * elapsedMillis / REFERENCE_FRAME_MILLIS;
+        //这里减去perVolume是为了防止volume频繁在targetVolume上下抖动
+        if (volume < targetVolume - perVolume) {
+            return Math.min(volume + step, targetVolume);
+        } else if (volume > targetVolume + perVolume) {
+            if (volume < perVolume * 2) {
+                return perVolume * 2;
+            } else {
+                return Math.max(volume - step, targetVolume);
+            }
+        } else {
+            return targetVolume;
+        }
+    }
+}
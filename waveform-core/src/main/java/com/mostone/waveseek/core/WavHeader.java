@@ -0,0 +1,150 @@
+package com.mostone.waveseek.core;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+
+/**
+ * ================================================
+ * 描    述: WAV文件头，只解析fmt和data块，得到采样格式和PCM数据在文件中的范围
+ * <p>
+ * 支持PCM(1)、IEEE float(3)以及WAVE_FORMAT_EXTENSIBLE(0xFFFE)中的这两种子格式
+ * ================================================
+ */
+public final class WavHeader {
+
+    private static final int WAVE_FORMAT_PCM = 1;
+    private static final int WAVE_FORMAT_IEEE_FLOAT = 3;
+    private static final int WAVE_FORMAT_EXTENSIBLE = 0xFFFE;
+
+    private final PcmFormat format;
+    private final long dataOffset;
+    private final long dataLength;
+
+    private WavHeader(PcmFormat format, long dataOffset, long dataLength) {
+        this.format = format;
+        this.dataOffset = dataOffset;
+        this.dataLength = dataLength;
+    }
+
+    /**
+     * 从文件开头读取WAV头，不改变channel的position
+     *
+     * @throws IOException 不是WAV文件，或者采样格式不支持
+     */
+    public static WavHeader read(FileChannel channel) throws IOException {
+        long fileSize = channel.size();
+        ByteBuffer buf = ByteBuffer.allocate(40).order(ByteOrder.LITTLE_ENDIAN);
+        if (readFully(channel, buf, 0, 12) < 12
+                || buf.getInt(0) != fourCC("RIFF") || buf.getInt(8) != fourCC("WAVE")) {
+            throw new IOException("Not a RIFF/WAVE file");
+        }
+        long riffSize = buf.getInt(4) & 0xFFFFFFFFL;
+
+        PcmFormat format = null;
+        long pos = 12;
+        while (pos + 8 <= fileSize) {
+            readFully(channel, buf, pos, 8);
+            int id = buf.getInt(0);
+            long size = buf.getInt(4) & 0xFFFFFFFFL;
+            long body = pos + 8;
+            if (id == fourCC("fmt ")) {
+                int n = readFully(channel, buf, body, (int) Math.min(size, buf.capacity()));
+                format = parseFormat(buf, n);
+            } else if (id == fourCC("data")) {
+                if (format == null) throw new IOException("data chunk before fmt chunk");
+                //录音中断或流式写入时data块长度可能未回填，以文件实际长度为准。
+                //0xFFFFFFFF按文件长度截断即可；0也可能是真正的空data块，之后还有LIST等块，
+                //只有RIFF长度同样是占位值，或者按RIFF长度data块就是最后一块时才读到文件末尾
+                long remaining = fileSize - body;
+                boolean isUnfinalized = size == 0
+                        && (riffSize == 0 || riffSize == 0xFFFFFFFFL || riffSize + 8 <= body);
+                long length = isUnfinalized ? remaining : Math.min(size, remaining);
+                length -= length % format.frameSize();
+                return new WavHeader(format, body, length);
+            }
+            //块按2字节对齐
+            pos = body + size + (size & 1);
+        }
+        throw new IOException("No data chunk");
+    }
+
+    private static PcmFormat parseFormat(ByteBuffer buf, int length) throws IOException {
+        if (length < 16) throw new IOException("fmt chunk too short: " + length);
+        int formatTag = buf.getShort(0) & 0xFFFF;
+        int channels = buf.getShort(2) & 0xFFFF;
+        int sampleRate = buf.getInt(4);
+        int blockAlign = buf.getShort(12) & 0xFFFF;
+        int bitsPerSample = buf.getShort(14) & 0xFFFF;
+        if (formatTag == WAVE_FORMAT_EXTENSIBLE) {
+            if (length < 26) throw new IOException("fmt extension too short: " + length);
+            //SubFormat GUID的前两个字节即格式码
+            formatTag = buf.getShort(24) & 0xFFFF;
+        }
+        if (channels == 0 || blockAlign == 0 || blockAlign % channels != 0) {
+            throw new IOException("Invalid block align " + blockAlign + " for " + channels + " channels");
+        }
+        //有效位数可能小于容器，例如20位采样存放在3个字节中，按容器解码
+        int containerBytes = blockAlign / channels;
+
+        PcmFormat.Encoding encoding = null;
+        if (formatTag == WAVE_FORMAT_PCM) {
+            switch (containerBytes) {
+                case 1:
+                    encoding = PcmFormat.Encoding.PCM_8;
+                    break;
+                case 2:
+                    encoding = PcmFormat.Encoding.PCM_16;
+                    break;
+                case 3:
+                    encoding = PcmFormat.Encoding.PCM_24;
+                    break;
+                case 4:
+                    encoding = PcmFormat.Encoding.PCM_32;
+                    break;
+            }
+        } else if (formatTag == WAVE_FORMAT_IEEE_FLOAT) {
+            if (containerBytes == 4) encoding = PcmFormat.Encoding.FLOAT_32;
+            else if (containerBytes == 8) encoding = PcmFormat.Encoding.FLOAT_64;
+        }
+        if (encoding == null) {
+            throw new IOException("Unsupported WAV encoding: format=" + formatTag + ", bits=" + bitsPerSample);
+        }
+        return new PcmFormat(encoding, channels, sampleRate);
+    }
+
+    private static int readFully(FileChannel channel, ByteBuffer buf, long position, int length) throws IOException {
+        buf.clear().limit(length);
+        while (buf.hasRemaining()) {
+            if (channel.read(buf, position + buf.position()) < 0) break;
+        }
+        return buf.position();
+    }
+
+    private static int fourCC(String id) {
+        return id.charAt(0) | id.charAt(1) << 8 | id.charAt(2) << 16 | id.charAt(3) << 24;
+    }
+
+    public PcmFormat format() {
+        return format;
+    }
+
+    /**
+     * @return PCM数据在文件中的起始位置
+     */
+    public long dataOffset() {
+        return dataOffset;
+    }
+
+    /**
+     * @return PCM数据的字节数，已按帧对齐
+     */
+    public long dataLength() {
+        return dataLength;
+    }
+
+    public long frames() {
+        return dataLength / format.frameSize();
+    }
+}
@@ -0,0 +1,89 @@
+package com.mostone.waveseek.core;
+
+/**
+ * ================================================
+ * 描    述: 波形计算用到的共享查找表
+ * <p>
+ * 表在类加载时构建一次，之后只读，所有View实例共享，不再每个实例各存一份装箱的衰减系数
+ * ================================================
+ */
+public final class WaveTables {
+
+    /**
+     * 衰减系数表的精度，与原先SparseArray的key一致：mapX * 1000
+     */
+    private static final int RECESSION_SCALE = 1000;
+    /**
+     * 衰减系数表覆盖的mapX范围[-2,2]
+     */
+    private static final int RECESSION_RANGE = 2;
+    private static final float[] RECESSION = new float[2 * RECESSION_RANGE * RECESSION_SCALE + 1];
+
+    /**
+     * sin(πx)表在一个周期x∈[0,2)内的分段数
+     */
+    private static final int SIN_STEPS = 4096;
+    private static final float SIN_STEPS_PER_UNIT = SIN_STEPS / 2f;
+    //多存一项，插值时不需要回绕
+    private static final float[] SIN_PI = new float[SIN_STEPS + 1];
+
+    static {
+        for (int i = 0; i < RECESSION.length; i++) {
+            double x = (i - RECESSION_RANGE * RECESSION_SCALE) / (double) RECESSION_SCALE;
+            RECESSION[i] = (float) recessionExact(x);
+        }
+        for (int i = 0; i <= SIN_STEPS; i++) {
+            SIN_PI[i] = (float) Math.sin(Math.PI * i / SIN_STEPS_PER_UNIT);
+        }
+    }
+
+    private WaveTables() {
+    }
+
+    /**
+     * 衰减函数 4 / (4 + x^4)
+     * <p>
+     * [-2,2]内按0.001取整查表，与原先按(int)(mapX * 1000)缓存的精度相同，超出范围时直接计算
+     *
+     * @param mapX 换算到[-2,2]之间的x值
+     */
+    public static float recession(float mapX) {
+        int index = (int) (mapX * RECESSION_SCALE) + RECESSION_RANGE * RECESSION_SCALE;
+        if (index < 0 || index >= RECESSION.length) return (float) recessionExact(mapX);
+        return RECESSION[index];
+    }
+
+    private static double recessionExact(double x) {
+        return 4 / (4 + Math.pow(x, 4));
+    }
+
+    /**
+     * 波形函数 sin(πx - π·offset) · 4 / (4 + x^4)
+     *
+     * @param mapX   换算到[-2,2]之间的x值
+     * @param offset 偏移量，以2为周期
+     * @return [-1, 1]
+     */
+    public static float wave(float mapX, float offset) {
+        return sinPi(mapX - offset % 2) * recession(mapX);
+    }
+
+    /**
+     * 查表计算sin(πx)，相邻表项之间线性插值
+     * <p>
+     * 表项间距h = 2π/4096，线性插值误差不超过h²/8 ≈ 2.9e-7，加上float舍入，
+     * 与Math.sin(Math.PI * x)的绝对误差小于5e-7，远小于一个像素
+     *
+     * @param x 任意值，按周期2折算
+     * @return [-1, 1]
+     */
+    public static float sinPi(float x) {
+        float pos = x * SIN_STEPS_PER_UNIT;
+        //floor到整数后按表长取模，负数同样适用
+        int base = (int) Math.floor(pos);
+        float fraction = pos - base;
+        int index = base & (SIN_STEPS - 1);
+        float y0 = SIN_PI[index];
+        return y0 + (SIN_PI[index + 1] - y0) * fraction;
+    }
+}
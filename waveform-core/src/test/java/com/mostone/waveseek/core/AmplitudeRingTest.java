@@ -0,0 +1,95 @@
+package com.mostone.waveseek.core;
+
+import org.junit.Test;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * {@link AmplitudeRing}的归约结果、缓冲区满时的合并，以及两个线程并发时不丢失数据
+ */
+public class AmplitudeRingTest {
+
+    @Test
+    public void drainReducesEverythingSinceTheLastDrain() {
+        AmplitudeRing ring = new AmplitudeRing(16);
+        assertEquals(16, ring.capacity());
+        assertEquals(0, ring.drain());
+
+        ring.offer(new short[]{0, -16384, 8192, 0}, 1, 2);
+        ring.offer(-0.25f);
+        assertEquals(3, ring.drain());
+        assertEquals(0.5f, ring.peak(), 0f);
+        assertEquals(Math.sqrt((0.25 + 0.0625 + 0.0625) / 3), ring.rms(), 1e-6);
+
+        //没有新数据时保留上次的结果
+        assertEquals(0, ring.drain());
+        assertEquals(0.5f, ring.peak(), 0f);
+    }
+
+    @Test
+    public void overflowKeepsPeaksAndExactRms() {
+        AmplitudeRing ring = new AmplitudeRing(8);
+        float[] samples = new float[1000];
+        double sum = 0;
+        for (int i = 0; i < samples.length; i++) {
+            samples[i] = (i % 10) / 10f;
+            sum += (double) samples[i] * samples[i];
+        }
+        //峰值在缓冲区满之后到达
+        samples[777] = 0.99f;
+        sum += 0.99 * 0.99 - 0.7 * 0.7;
+        ring.offer(samples, 0, samples.length);
+
+        assertEquals(8, ring.drain());
+        ring.flush();
+        assertEquals(samples.length - 8, ring.drain());
+        assertEquals(0.99f, ring.peak(), 0f);
+
+        double tail = sum;
+        for (int i = 0; i < 8; i++) tail -= (double) samples[i] * samples[i];
+        assertEquals(Math.sqrt(tail / (samples.length - 8)), ring.rms(), 1e-5);
+    }
+
+    @Test
+    public void concurrentProducerLosesNothing() throws InterruptedException {
+        final AmplitudeRing ring = new AmplitudeRing(64);
+        final int total = 2000000;
+        final AtomicBoolean isDone = new AtomicBoolean();
+        Thread producer = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                short[] chunk = new short[100];
+                for (int n = 0; n < total; n += chunk.length) {
+                    for (int i = 0; i < chunk.length; i++) {
+                        //只有一个最大值
+                        chunk[i] = (short) (n + i == total / 2 ? 32767 : (n + i) % 1000);
+                    }
+                    ring.offer(chunk, 0, chunk.length);
+                }
+                while (!ring.flush()) {
+                    Thread.yield();
+                }
+                isDone.set(true);
+            }
+        });
+        producer.start();
+
+        long drained = 0;
+        float peak = 0f;
+        while (true) {
+            //先读标记再取，标记为true时取完即为全部数据
+            boolean isLast = isDone.get();
+            long n = ring.drain();
+            if (n > 0) {
+                drained += n;
+                peak = Math.max(peak, ring.peak());
+            }
+            if (isLast) break;
+        }
+        producer.join();
+        assertEquals(total, drained);
+        assertEquals(32767 / 32768f, peak, 0f);
+    }
+}
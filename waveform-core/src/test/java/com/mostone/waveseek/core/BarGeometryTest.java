@@ -0,0 +1,58 @@
+package com.mostone.waveseek.core;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * {@link BarGeometry}只布局可见区域内的小条
+ */
+public class BarGeometryTest {
+
+    private static final float WIDTH = 1000f;
+    private static final float BAR = 4f;
+    private static final float GAP = 6f;
+
+    @Test
+    public void unzoomedMatchesPacked() {
+        BarGeometry packed = new BarGeometry();
+        packed.layoutPacked(20f, WIDTH, BAR, GAP);
+        BarGeometry visible = new BarGeometry();
+        visible.layoutVisible(20f, WIDTH, WIDTH, 0f, BAR, GAP);
+
+        assertEquals(packed.barCount(), visible.barCount());
+        assertEquals(packed.barCount(), visible.totalBars());
+        assertEquals(0, visible.firstBar());
+        for (int i = 0; i < packed.barCount(); i++) {
+            assertEquals(packed.left(i), visible.left(i), 0f);
+        }
+    }
+
+    @Test
+    public void zoomedLayoutIsBoundedByWidth() {
+        BarGeometry geometry = new BarGeometry();
+        float content = WIDTH * 1000;
+        int total = (int) ((content + GAP) / (GAP + BAR));
+        for (float scroll = 0f; scroll <= content - WIDTH; scroll += 12345.6f) {
+            geometry.layoutVisible(0f, WIDTH, content, scroll, BAR, GAP);
+            assertEquals(total, geometry.totalBars());
+            assertTrue(geometry.barCount() <= (int) (WIDTH / (BAR + GAP)) + 1);
+            //首尾小条与可见区域相交，前后相邻的小条不相交
+            int n = geometry.barCount();
+            assertTrue(geometry.left(0) + BAR > 0f);
+            assertTrue(geometry.left(0) - (BAR + GAP) + BAR <= 0f);
+            assertTrue(geometry.left(n - 1) < WIDTH);
+            assertTrue(geometry.left(n - 1) + (BAR + GAP) >= WIDTH
+                    || geometry.firstBar() + n == total);
+            assertEquals(geometry.firstBar() * (BAR + GAP) - scroll, geometry.left(0), 1e-2f);
+        }
+    }
+
+    @Test
+    public void scrolledToTheEnd() {
+        BarGeometry geometry = new BarGeometry();
+        geometry.layoutVisible(0f, WIDTH, WIDTH * 4, WIDTH * 3, BAR, GAP);
+        assertEquals(geometry.totalBars(), geometry.firstBar() + geometry.barCount());
+    }
+}
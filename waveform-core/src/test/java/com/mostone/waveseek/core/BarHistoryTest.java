@@ -0,0 +1,48 @@
+package com.mostone.waveseek.core;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * {@link BarHistory}的覆盖和改变容量
+ */
+public class BarHistoryTest {
+
+    @Test
+    public void keepsTheNewestBars() {
+        BarHistory history = new BarHistory(4);
+        for (int i = 0; i < 10; i++) history.push(i);
+        assertEquals(10, history.count());
+        assertEquals(4, history.size());
+        for (long i = 6; i < 10; i++) {
+            assertEquals(i, history.get(i), 0f);
+            assertEquals(i % 4, history.slot(i));
+        }
+    }
+
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void overwrittenBarsAreGone() {
+        BarHistory history = new BarHistory(4);
+        for (int i = 0; i < 10; i++) history.push(i);
+        history.get(5);
+    }
+
+    @Test
+    public void resizeKeepsIndices() {
+        BarHistory history = new BarHistory(4);
+        for (int i = 0; i < 10; i++) history.push(i);
+
+        history.resize(3);
+        assertEquals(3, history.size());
+        for (long i = 7; i < 10; i++) assertEquals(i, history.get(i), 0f);
+
+        history.resize(8);
+        assertEquals(3, history.size());
+        history.push(10);
+        for (long i = 7; i < 11; i++) assertEquals(i, history.get(i), 0f);
+
+        history.clear();
+        assertEquals(0, history.size());
+    }
+}
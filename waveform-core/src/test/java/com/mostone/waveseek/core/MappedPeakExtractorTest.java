@@ -0,0 +1,159 @@
+package com.mostone.waveseek.core;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * {@link MappedPeakExtractor}对各采样格式的解码，以及跨映射窗口的归约
+ */
+public class MappedPeakExtractorTest {
+
+    private static final int CHANNELS = 2;
+    private static final int FRAMES = 10007;
+    private static final int BUCKETS = 37;
+    //故意不是帧大小的整数倍，覆盖窗口边界的处理
+    private static final int WINDOW_BYTES = 1001;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void wavMatchesInMemoryReductionForAllEncodings() throws IOException {
+        for (PcmFormat.Encoding encoding : PcmFormat.Encoding.values()) {
+            PcmFormat format = new PcmFormat(encoding, CHANNELS, 16000);
+            float[] decoded = new float[FRAMES * CHANNELS];
+            ByteBuffer pcm = encode(format, decoded);
+            File file = folder.newFile(encoding + ".wav");
+            writeWav(file, format, pcm);
+
+            RandomAccessFile raf = new RandomAccessFile(file, "r");
+            try {
+                WavHeader header = WavHeader.read(raf.getChannel());
+                assertEquals(encoding, header.format().encoding());
+                assertEquals(CHANNELS, header.format().channels());
+                assertEquals(FRAMES, header.frames());
+                Peaks actual = MappedPeakExtractor.extract(raf.getChannel(), header.dataOffset(),
+                        header.dataLength(), header.format(), BUCKETS, WINDOW_BYTES);
+                assertPeaksEqual(encoding.toString(), PeakReducer.reduce(decoded, CHANNELS, BUCKETS), actual);
+            } finally {
+                raf.close();
+            }
+        }
+    }
+
+    @Test
+    public void rawBigEndianPcm() throws IOException {
+        PcmFormat format = new PcmFormat(PcmFormat.Encoding.PCM_24, CHANNELS, 16000, ByteOrder.BIG_ENDIAN);
+        float[] decoded = new float[FRAMES * CHANNELS];
+        ByteBuffer pcm = encode(format, decoded);
+        File file = folder.newFile("raw.pcm");
+        write(file, pcm);
+
+        Peaks actual = MappedPeakExtractor.extractPcm(file, format, BUCKETS);
+        assertPeaksEqual("PCM_24 BE", PeakReducer.reduce(decoded, CHANNELS, BUCKETS), actual);
+    }
+
+    /**
+     * 生成包络变化的双声道信号并按format编码，decoded中写入解码后应得到的值
+     */
+    private static ByteBuffer encode(PcmFormat format, float[] decoded) {
+        ByteBuffer buf = ByteBuffer.allocate(FRAMES * format.frameSize()).order(format.order());
+        for (int i = 0; i < decoded.length; i++) {
+            double envelope = 0.2 + 0.8 * Math.abs(Math.sin(i * 0.0007));
+            double x = envelope * Math.sin(i * 0.05 + (i % CHANNELS) * 1.3);
+            switch (format.encoding()) {
+                case PCM_8: {
+                    int v = (int) Math.round(x * 127) + 128;
+                    buf.put((byte) v);
+                    decoded[i] = (v - 128) / 128f;
+                    break;
+                }
+                case PCM_16: {
+                    short v = (short) Math.round(x * 32767);
+                    buf.putShort(v);
+                    decoded[i] = v / 32768f;
+                    break;
+                }
+                case PCM_24: {
+                    int v = (int) Math.round(x * 8388607);
+                    if (format.order() == ByteOrder.BIG_ENDIAN) {
+                        buf.put((byte) (v >> 16)).put((byte) (v >> 8)).put((byte) v);
+                    } else {
+                        buf.put((byte) v).put((byte) (v >> 8)).put((byte) (v >> 16));
+                    }
+                    decoded[i] = v / 8388608f;
+                    break;
+                }
+                case PCM_32: {
+                    int v = (int) Math.round(x * Integer.MAX_VALUE);
+                    buf.putInt(v);
+                    decoded[i] = (float) (v / 2147483648d);
+                    break;
+                }
+                case FLOAT_32:
+                    buf.putFloat((float) x);
+                    decoded[i] = (float) x;
+                    break;
+                case FLOAT_64:
+                    buf.putDouble(x);
+                    decoded[i] = (float) x;
+                    break;
+            }
+        }
+        buf.flip();
+        return buf;
+    }
+
+    private static void writeWav(File file, PcmFormat format, ByteBuffer pcm) throws IOException {
+        boolean isFloat = format.encoding() == PcmFormat.Encoding.FLOAT_32
+                || format.encoding() == PcmFormat.Encoding.FLOAT_64;
+        int bytesPerSample = format.encoding().bytesPerSample();
+        ByteBuffer header = ByteBuffer.allocate(44).order(ByteOrder.LITTLE_ENDIAN);
+        header.put("RIFF".getBytes("US-ASCII")).putInt(36 + pcm.remaining()).put("WAVE".getBytes("US-ASCII"));
+        header.put("fmt ".getBytes("US-ASCII")).putInt(16)
+                .putShort((short) (isFloat ? 3 : 1))
+                .putShort((short) format.channels())
+                .putInt(format.sampleRate())
+                .putInt(format.sampleRate() * format.frameSize())
+                .putShort((short) format.frameSize())
+                .putShort((short) (bytesPerSample * 8));
+        header.put("data".getBytes("US-ASCII")).putInt(pcm.remaining());
+        header.flip();
+
+        FileOutputStream out = new FileOutputStream(file);
+        try {
+            out.getChannel().write(header);
+            out.getChannel().write(pcm);
+        } finally {
+            out.close();
+        }
+    }
+
+    private static void write(File file, ByteBuffer pcm) throws IOException {
+        FileOutputStream out = new FileOutputStream(file);
+        try {
+            out.getChannel().write(pcm);
+        } finally {
+            out.close();
+        }
+    }
+
+    private static void assertPeaksEqual(String message, Peaks expected, Peaks actual) {
+        assertEquals(message, expected.size(), actual.size());
+        for (int b = 0; b < expected.size(); b++) {
+            assertEquals(message + " min[" + b + "]", expected.min(b), actual.min(b), 0f);
+            assertEquals(message + " max[" + b + "]", expected.max(b), actual.max(b), 0f);
+            assertEquals(message + " rms[" + b + "]", expected.rms(b), actual.rms(b), 0f);
+        }
+    }
+}
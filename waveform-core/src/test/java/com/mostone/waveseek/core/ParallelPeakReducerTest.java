@@ -0,0 +1,95 @@
+package com.mostone.waveseek.core;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * {@link ParallelPeakReducer}在不同并行度下与顺序归约逐位相同
+ */
+public class ParallelPeakReducerTest {
+
+    private static final int[] PARALLELISMS = {1, 2, 3, 8};
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void pcm16MatchesSequentialBitForBit() throws Exception {
+        //桶数覆盖：远少于采样、不整除、多于帧数(出现空桶)
+        int[][] cases = {{2, 3_000_001, 512}, {1, 1_234_567, 7}, {2, 1001, 2048}, {1, 0, 16}};
+        for (int[] c : cases) {
+            int channels = c[0];
+            short[] samples = noise(c[1] * channels, c[1]);
+            Peaks expected = PeakReducer.reduce(samples, channels, c[2]);
+            for (int parallelism : PARALLELISMS) {
+                ParallelPeakReducer reducer = new ParallelPeakReducer(parallelism);
+                try {
+                    assertBitIdentical(expected, reducer.reduce(samples, channels, c[2]));
+                } finally {
+                    reducer.shutdown();
+                }
+            }
+        }
+    }
+
+    @Test
+    public void mappedFileMatchesSequentialBitForBit() throws Exception {
+        PcmFormat format = new PcmFormat(PcmFormat.Encoding.PCM_24, 2, 48000);
+        int frames = 1_500_007;
+        ByteBuffer pcm = ByteBuffer.allocate(frames * format.frameSize()).order(ByteOrder.LITTLE_ENDIAN);
+        Random random = new Random(24);
+        while (pcm.hasRemaining()) pcm.put((byte) random.nextInt());
+        pcm.flip();
+        File file = folder.newFile("noise.pcm");
+        FileOutputStream out = new FileOutputStream(file);
+        try {
+            out.getChannel().write(pcm);
+        } finally {
+            out.close();
+        }
+
+        RandomAccessFile raf = new RandomAccessFile(file, "r");
+        try {
+            Peaks expected = MappedPeakExtractor.extract(raf.getChannel(), 0, raf.length(), format, 300, 1 << 16);
+            for (int parallelism : PARALLELISMS) {
+                ParallelPeakReducer reducer = new ParallelPeakReducer(parallelism);
+                try {
+                    assertBitIdentical(expected,
+                            reducer.extract(raf.getChannel(), 0, raf.length(), format, 300, 1 << 16));
+                } finally {
+                    reducer.shutdown();
+                }
+            }
+        } finally {
+            raf.close();
+        }
+    }
+
+    private static short[] noise(int length, long seed) {
+        Random random = new Random(seed);
+        short[] samples = new short[length];
+        for (int i = 0; i < length; i++) {
+            samples[i] = (short) (random.nextGaussian() * 8000 * (1 + Math.sin(i * 1e-5)));
+        }
+        return samples;
+    }
+
+    private static void assertBitIdentical(Peaks expected, Peaks actual) {
+        assertEquals(expected.size(), actual.size());
+        for (int b = 0; b < expected.size(); b++) {
+            assertEquals("min[" + b + "]", Float.floatToRawIntBits(expected.min(b)), Float.floatToRawIntBits(actual.min(b)));
+            assertEquals("max[" + b + "]", Float.floatToRawIntBits(expected.max(b)), Float.floatToRawIntBits(actual.max(b)));
+            assertEquals("rms[" + b + "]", Float.floatToRawIntBits(expected.rms(b)), Float.floatToRawIntBits(actual.rms(b)));
+        }
+    }
+}
@@ -0,0 +1,187 @@
+package com.mostone.waveseek.core;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * {@link PeakCache}的读写、失效、损坏文件的处理和按大小淘汰
+ */
+public class PeakCacheTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void roundTripIsExact() throws IOException {
+        PeakCache cache = new PeakCache(folder.newFolder("cache"), Long.MAX_VALUE);
+        PeakCache.Key key = PeakCache.Key.forFile(source("a.wav", 100));
+        PeakPyramid pyramid = PeakPyramid.build(randomPeaks(1000, 1));
+        cache.put(key, pyramid, 44100, 2, 123456L);
+
+        PeakCache.Entry entry = cache.get(key);
+        assertNotNull(entry);
+        assertEquals(44100, entry.sampleRate());
+        assertEquals(2, entry.channels());
+        assertEquals(123456L, entry.frames());
+        assertEquals(pyramid.levelCount(), entry.pyramid().levelCount());
+        for (int count : new int[]{1, 13, 500, 1000, 3000}) {
+            float[] expected = new float[count];
+            float[] actual = new float[count];
+            pyramid.peaks(0.1, 0.9, expected, count);
+            entry.pyramid().peaks(0.1, 0.9, actual, count);
+            for (int i = 0; i < count; i++) assertEquals(expected[i], actual[i], 0f);
+        }
+    }
+
+    @Test
+    public void peaksRoundTripKeepsRms() throws IOException {
+        PeakCache cache = new PeakCache(folder.newFolder("cache"), Long.MAX_VALUE);
+        PeakCache.Key key = PeakCache.Key.forFile(source("a.wav", 100));
+        Peaks peaks = randomPeaks(777, 4);
+        cache.put(key, peaks, 48000, 1, 999L);
+
+        PeakCache.Entry entry = cache.get(key);
+        assertNotNull(entry);
+        Peaks actual = entry.peaks();
+        assertNotNull(actual);
+        assertEquals(peaks.size(), actual.size());
+        for (int i = 0; i < peaks.size(); i++) {
+            assertEquals(peaks.min(i), actual.min(i), 0f);
+            assertEquals(peaks.max(i), actual.max(i), 0f);
+            assertEquals(peaks.rms(i), actual.rms(i), 0f);
+        }
+
+        //只写入金字塔时没有均方根
+        cache.put(key, PeakPyramid.build(peaks), 48000, 1, 999L);
+        assertNull(cache.get(key).peaks());
+    }
+
+    @Test
+    public void replacingAnEntryKeepsItReadable() throws IOException {
+        File dir = folder.newFolder("cache");
+        PeakCache cache = new PeakCache(dir, Long.MAX_VALUE);
+        PeakCache.Key key = PeakCache.Key.forContent("x");
+        cache.put(key, PeakPyramid.fromLevels(new float[]{0.25f}), 8000, 1, 100L);
+        cache.put(key, PeakPyramid.fromLevels(new float[]{0.5f}), 8000, 1, 100L);
+
+        float[] dst = new float[1];
+        cache.get(key).pyramid().peaks(0, 1, dst, 1);
+        assertEquals(0.5f, dst[0], 0f);
+        //替换后不留下临时文件
+        assertEquals(1, dir.listFiles().length);
+    }
+
+    @Test
+    public void changedSourceIsAMiss() throws IOException {
+        File dir = folder.newFolder("cache");
+        PeakCache cache = new PeakCache(dir, Long.MAX_VALUE);
+        File source = source("a.wav", 100);
+        cache.put(PeakCache.Key.forFile(source), PeakPyramid.fromLevels(new float[]{0.5f}), 8000, 1, 100L);
+
+        source("a.wav", 200);
+        assertNull(cache.get(PeakCache.Key.forFile(source)));
+        assertEquals(0L, cache.size());
+
+        //内容哈希不随路径变化
+        cache.put(PeakCache.Key.forContent("abc"), PeakPyramid.fromLevels(new float[]{0.5f}), 8000, 1, 100L);
+        assertNotNull(cache.get(PeakCache.Key.forContent("abc")));
+        assertNull(cache.get(PeakCache.Key.forContent("abd")));
+    }
+
+    @Test
+    public void corruptFileIsAMiss() throws IOException {
+        File dir = folder.newFolder("cache");
+        PeakCache cache = new PeakCache(dir, Long.MAX_VALUE);
+        PeakCache.Key key = PeakCache.Key.forContent("x");
+        cache.put(key, PeakPyramid.build(randomPeaks(64, 2)), 8000, 1, 100L);
+
+        File file = dir.listFiles()[0];
+        RandomAccessFile raf = new RandomAccessFile(file, "rw");
+        try {
+            raf.setLength(raf.length() - 4);
+        } finally {
+            raf.close();
+        }
+        assertNull(cache.get(key));
+        assertFalse(file.exists());
+    }
+
+    @Test
+    public void leftoverTempFileDoesNotAffectTheEntry() throws IOException {
+        File dir = folder.newFolder("cache");
+        PeakCache cache = new PeakCache(dir, Long.MAX_VALUE);
+        PeakCache.Key key = PeakCache.Key.forContent("x");
+        cache.put(key, PeakPyramid.fromLevels(new float[]{0.25f, 0.75f}), 8000, 1, 100L);
+        //模拟写入过程中崩溃留下的半个临时文件
+        FileOutputStream out = new FileOutputStream(new File(dir, "partial.tmp"));
+        try {
+            out.write(new byte[10]);
+        } finally {
+            out.close();
+        }
+
+        PeakCache.Entry entry = cache.get(key);
+        assertNotNull(entry);
+        float[] dst = new float[2];
+        entry.pyramid().peaks(0, 1, dst, 2);
+        assertEquals(0.25f, dst[0], 0f);
+        assertEquals(0.75f, dst[1], 0f);
+    }
+
+    @Test
+    public void evictsLeastRecentlyUsed() throws IOException {
+        File dir = folder.newFolder("cache");
+        PeakPyramid pyramid = PeakPyramid.build(randomPeaks(1000, 3));
+        PeakCache unbounded = new PeakCache(dir, Long.MAX_VALUE);
+        unbounded.put(PeakCache.Key.forContent("a"), pyramid, 8000, 1, 100L);
+        long entryBytes = unbounded.size();
+        PeakCache cache = new PeakCache(dir, entryBytes * 2);
+
+        cache.put(PeakCache.Key.forContent("b"), pyramid, 8000, 1, 100L);
+        long now = System.currentTimeMillis();
+        File[] files = dir.listFiles();
+        for (File file : files) file.setLastModified(now - 60_000);
+        //访问a之后b成为最久未使用的
+        assertNotNull(cache.get(PeakCache.Key.forContent("a")));
+        cache.put(PeakCache.Key.forContent("c"), pyramid, 8000, 1, 100L);
+
+        assertTrue(cache.size() <= entryBytes * 2);
+        assertNotNull(cache.get(PeakCache.Key.forContent("a")));
+        assertNull(cache.get(PeakCache.Key.forContent("b")));
+        assertNotNull(cache.get(PeakCache.Key.forContent("c")));
+    }
+
+    private File source(String name, int length) throws IOException {
+        File file = new File(folder.getRoot(), name);
+        FileOutputStream out = new FileOutputStream(file);
+        try {
+            out.write(new byte[length]);
+        } finally {
+            out.close();
+        }
+        return file;
+    }
+
+    private static Peaks randomPeaks(int size, long seed) {
+        Random random = new Random(seed);
+        Peaks peaks = new Peaks(size);
+        for (int i = 0; i < size; i++) {
+            float a = random.nextFloat();
+            peaks.set(i, -a * random.nextFloat(), a, a / 2);
+        }
+        return peaks;
+    }
+}
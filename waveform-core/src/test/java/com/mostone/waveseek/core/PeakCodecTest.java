@@ -0,0 +1,86 @@
+package com.mostone.waveseek.core;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+/**
+ * {@link PeakCodec}的字节布局、各位数的量化误差和连续解码
+ */
+public class PeakCodecTest {
+
+    @Test
+    public void byteLayout() {
+        byte[] eight = PeakCodec.encode(new float[]{0f, 1f, 0.5f}, 8);
+        assertArrayEquals(new byte[]{0x18, 0, 3, 0, (byte) 0xFF, (byte) 0x80}, eight);
+
+        //0, 15, 8 -> 0000 1111 1000 0000
+        byte[] four = PeakCodec.encode(new float[]{0f, 1f, 0.5f}, 4);
+        assertArrayEquals(new byte[]{0x14, 0, 3, 0x0F, (byte) 0x80}, four);
+
+        //31, 1 -> 11111 00001 000000
+        byte[] five = PeakCodec.encode(new float[]{1f, 1f / 31}, 5);
+        assertArrayEquals(new byte[]{0x15, 0, 2, (byte) 0xF8, 0x40}, five);
+    }
+
+    @Test
+    public void roundTripWithinHalfAStep() {
+        float[] levels = new float[1001];
+        Random random = new Random(1);
+        for (int i = 0; i < levels.length; i++) levels[i] = random.nextFloat();
+        levels[0] = 0f;
+        levels[1] = 1f;
+        for (int bits : new int[]{4, 5, 8}) {
+            byte[] encoded = PeakCodec.encode(levels, bits);
+            assertEquals(PeakCodec.encodedSize(levels.length, bits), encoded.length);
+            float[] decoded = new float[levels.length];
+            assertEquals(levels.length, PeakCodec.decode(ByteBuffer.wrap(encoded), decoded));
+            float step = 1f / ((1 << bits) - 1);
+            for (int i = 0; i < levels.length; i++) {
+                assertEquals("bits=" + bits, levels[i], decoded[i], step / 2 + 1e-6f);
+            }
+            assertEquals(0f, decoded[0], 0f);
+            assertEquals(1f, decoded[1], 0f);
+        }
+    }
+
+    @Test
+    public void outOfRangeIsClamped() {
+        float[] decoded = new float[3];
+        PeakCodec.decode(ByteBuffer.wrap(PeakCodec.encode(new float[]{-1f, 2f, Float.NaN}, 5)), decoded);
+        assertArrayEquals(new float[]{0f, 1f, 0f}, decoded, 0f);
+    }
+
+    @Test
+    public void consecutiveEncodingsInOneBuffer() {
+        float[] a = {0.2f, 0.4f, 0.6f};
+        float[] b = {1f, 0f};
+        ByteBuffer buf = ByteBuffer.allocate(1 + PeakCodec.encodedSize(3, 5) + PeakCodec.encodedSize(2, 4));
+        buf.put((byte) 0x7F);
+        PeakCodec.encode(a, 0, a.length, 5, buf);
+        PeakCodec.encode(b, 0, b.length, 4, buf);
+        buf.flip();
+        buf.get();
+
+        float[] decoded = new float[3];
+        assertEquals(3, PeakCodec.count(buf));
+        PeakCodec.decode(buf, decoded);
+        assertEquals(0.6f, decoded[2], 1f / 62);
+        PeakPyramid pyramid = PeakPyramid.decode(buf);
+        assertEquals(0, buf.remaining());
+        assertEquals(2, pyramid.baseSize());
+        pyramid.peaks(0, 1, decoded, 2);
+        assertEquals(1f, decoded[0], 0f);
+        assertEquals(0f, decoded[1], 0f);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void truncatedInputIsRejected() {
+        byte[] encoded = PeakCodec.encode(new float[100], 8);
+        PeakCodec.decode(ByteBuffer.wrap(encoded, 0, encoded.length - 1), new float[100]);
+    }
+}
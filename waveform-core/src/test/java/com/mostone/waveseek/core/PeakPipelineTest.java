@@ -0,0 +1,267 @@
+package com.mostone.waveseek.core;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * {@link PeakPipeline}在合成PCM源上的结果、缓冲区复用、背压和取消
+ */
+public class PeakPipelineTest {
+
+    private static final int CHANNELS = 2;
+    private static final int FRAMES = 200_003;
+    private static final int BUCKETS = 97;
+    private static final int BUFFER_COUNT = 3;
+    private static final int BUFFER_BYTES = 4096;
+
+    private final ExecutorService decoder = Executors.newCachedThreadPool();
+    private final ExecutorService publisher = Executors.newSingleThreadExecutor();
+
+    @After
+    public void tearDown() {
+        decoder.shutdownNow();
+        publisher.shutdownNow();
+    }
+
+    @Test
+    public void matchesInMemoryReduction() throws Exception {
+        SyntheticSource source = new SyntheticSource(FRAMES, 0);
+        PeakPipeline pipeline = new PeakPipeline(source, BUCKETS, BUFFER_COUNT, BUFFER_BYTES);
+        final AtomicInteger lastCompleted = new AtomicInteger(-1);
+        final CountDownLatch finished = new CountDownLatch(1);
+        pipeline.setListener(new PeakPipeline.Listener() {
+            @Override
+            public void onPeaksUpdated(Peaks peaks, int completedBuckets) {
+                //发布是单调的
+                assertTrue(completedBuckets > lastCompleted.get());
+                lastCompleted.set(completedBuckets);
+                if (completedBuckets == peaks.size()) finished.countDown();
+            }
+        }, publisher);
+
+        Peaks actual = pipeline.run(decoder);
+
+        Peaks expected = PeakReducer.reduce(source.samples(), CHANNELS, BUCKETS);
+        for (int b = 0; b < BUCKETS; b++) {
+            assertEquals(expected.min(b), actual.min(b), 0f);
+            assertEquals(expected.max(b), actual.max(b), 0f);
+            assertEquals(expected.rms(b), actual.rms(b), 0f);
+        }
+        assertTrue(finished.await(5, TimeUnit.SECONDS));
+        assertTrue(source.isClosed);
+        //只使用了创建时分配的缓冲区
+        assertTrue(source.buffers.size() <= BUFFER_COUNT);
+    }
+
+    @Test
+    public void decoderBlocksWhenReducerFallsBehind() throws Exception {
+        final SyntheticSource source = new SyntheticSource(FRAMES, 0);
+        //归约阶段在拿到第一个缓冲区后读取format时停住
+        source.formatGate = new CountDownLatch(1);
+        final PeakPipeline pipeline = new PeakPipeline(source, BUCKETS, BUFFER_COUNT, BUFFER_BYTES);
+        ExecutorService reducer = Executors.newSingleThreadExecutor();
+        try {
+            Future<Peaks> result = reducer.submit(new Callable<Peaks>() {
+                @Override
+                public Peaks call() throws Exception {
+                    return pipeline.run(decoder);
+                }
+            });
+            long deadline = System.currentTimeMillis() + 5000;
+            while (source.reads.get() < BUFFER_COUNT && System.currentTimeMillis() < deadline) Thread.sleep(1);
+            Thread.sleep(100);
+            //所有缓冲区都已填充，解码阶段等待空闲缓冲区，不会继续读取
+            assertEquals(BUFFER_COUNT, source.reads.get());
+
+            source.formatGate.countDown();
+            result.get(5, TimeUnit.SECONDS);
+            assertEquals(FRAMES, source.position);
+        } finally {
+            reducer.shutdownNow();
+        }
+    }
+
+    @Test
+    public void cancelStopsBothStagesMidFile() throws Exception {
+        //每次读取都稍作停顿，保证取消时还在文件中间
+        final SyntheticSource source = new SyntheticSource(FRAMES, 1);
+        final PeakPipeline pipeline = new PeakPipeline(source, BUCKETS, BUFFER_COUNT, BUFFER_BYTES);
+        ExecutorService reducer = Executors.newSingleThreadExecutor();
+        try {
+            Future<Peaks> result = reducer.submit(new Callable<Peaks>() {
+                @Override
+                public Peaks call() throws Exception {
+                    return pipeline.run(decoder);
+                }
+            });
+            while (source.reads.get() < 5) Thread.sleep(1);
+            pipeline.cancel();
+            try {
+                result.get(5, TimeUnit.SECONDS);
+                fail("cancelled pipeline returned peaks");
+            } catch (ExecutionException e) {
+                assertTrue(e.getCause() instanceof InterruptedIOException);
+            }
+            assertTrue(source.position < FRAMES);
+            long deadline = System.currentTimeMillis() + 5000;
+            while (!source.isClosed && System.currentTimeMillis() < deadline) Thread.sleep(1);
+            assertTrue(source.isClosed);
+        } finally {
+            reducer.shutdownNow();
+        }
+    }
+
+    @Test
+    public void decodeErrorIsRethrown() throws Exception {
+        SyntheticSource source = new SyntheticSource(FRAMES, 0);
+        source.failAt = FRAMES / 2;
+        PeakPipeline pipeline = new PeakPipeline(source, BUCKETS, BUFFER_COUNT, BUFFER_BYTES);
+        try {
+            pipeline.run(decoder);
+            fail("decode error was swallowed");
+        } catch (IOException e) {
+            assertEquals("synthetic failure", e.getMessage());
+        }
+        assertTrue(source.isClosed);
+    }
+
+    @Test
+    public void decoderRuntimeExceptionIsRethrown() throws Exception {
+        SyntheticSource source = new SyntheticSource(FRAMES, 0);
+        source.failAt = FRAMES / 2;
+        source.isUncheckedFailure = true;
+        PeakPipeline pipeline = new PeakPipeline(source, BUCKETS, BUFFER_COUNT, BUFFER_BYTES);
+        try {
+            pipeline.run(decoder);
+            fail("decoder runtime exception returned zero-padded peaks");
+        } catch (IOException e) {
+            assertTrue(e.getCause() instanceof IllegalStateException);
+            assertEquals("synthetic failure", e.getCause().getMessage());
+        }
+        assertTrue(source.isClosed);
+    }
+
+    @Test
+    public void unknownLengthFailsInsteadOfReturningEmptyPeaks() throws Exception {
+        SyntheticSource source = new SyntheticSource(FRAMES, 0);
+        source.isLengthUnknown = true;
+        PeakPipeline pipeline = new PeakPipeline(source, BUCKETS, BUFFER_COUNT, BUFFER_BYTES);
+        try {
+            pipeline.run(decoder);
+            fail("source without a frame estimate returned peaks");
+        } catch (IOException e) {
+            assertFalse(e instanceof InterruptedIOException);
+        }
+        //解码阶段随之停止
+        long deadline = System.currentTimeMillis() + 5000;
+        while (!source.isClosed && System.currentTimeMillis() < deadline) Thread.sleep(1);
+        assertTrue(source.isClosed);
+        assertTrue(source.position < FRAMES);
+    }
+
+    /**
+     * 16位双声道的合成信号，每次最多写入一个缓冲区
+     */
+    private static final class SyntheticSource implements PcmSource {
+
+        private final PcmFormat format = new PcmFormat(PcmFormat.Encoding.PCM_16, CHANNELS, 16000);
+        private final long frames;
+        private final long readDelayMillis;
+        final Set<ByteBuffer> buffers = Collections.newSetFromMap(new IdentityHashMap<ByteBuffer, Boolean>());
+        final AtomicInteger reads = new AtomicInteger();
+        volatile long position;
+        volatile boolean isClosed;
+        long failAt = -1;
+        boolean isUncheckedFailure;
+        //模拟没有时长信息的流
+        boolean isLengthUnknown;
+        CountDownLatch formatGate;
+
+        SyntheticSource(long frames, long readDelayMillis) {
+            this.frames = frames;
+            this.readDelayMillis = readDelayMillis;
+        }
+
+        private static short sample(long i) {
+            double envelope = 0.1 + 0.9 * Math.abs(Math.sin(i * 0.0001));
+            return (short) Math.round(envelope * Math.sin(i * 0.03 + (i % CHANNELS)) * 32767);
+        }
+
+        short[] samples() {
+            short[] samples = new short[(int) frames * CHANNELS];
+            for (int i = 0; i < samples.length; i++) samples[i] = sample(i);
+            return samples;
+        }
+
+        @Override
+        public int read(ByteBuffer dst) throws IOException {
+            reads.incrementAndGet();
+            buffers.add(dst);
+            if (readDelayMillis > 0) {
+                try {
+                    Thread.sleep(readDelayMillis);
+                } catch (InterruptedException e) {
+                    throw new InterruptedIOException();
+                }
+            }
+            if (failAt >= 0 && position >= failAt) {
+                if (isUncheckedFailure) throw new IllegalStateException("synthetic failure");
+                throw new IOException("synthetic failure");
+            }
+            if (position >= frames) return -1;
+            dst.order(ByteOrder.LITTLE_ENDIAN);
+            int start = dst.position();
+            long end = Math.min(frames, position + dst.remaining() / format.frameSize());
+            for (long f = position; f < end; f++) {
+                for (int c = 0; c < CHANNELS; c++) {
+                    dst.putShort(sample(f * CHANNELS + c));
+                }
+            }
+            position = end;
+            return dst.position() - start;
+        }
+
+        @Override
+        public PcmFormat format() {
+            if (formatGate != null) {
+                try {
+                    formatGate.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            return format;
+        }
+
+        @Override
+        public long estimatedFrames() {
+            return isLengthUnknown ? 0 : frames;
+        }
+
+        @Override
+        public void close() {
+            isClosed = true;
+        }
+    }
+}
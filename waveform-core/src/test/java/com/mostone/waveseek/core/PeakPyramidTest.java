@@ -0,0 +1,110 @@
+package com.mostone.waveseek.core;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * {@link PeakPyramid}的分层和按任意小条数量、可见范围的查询
+ */
+public class PeakPyramidTest {
+
+    @Test
+    public void levelsHalveUntilOneBucket() {
+        PeakPyramid pyramid = PeakPyramid.build(randomPeaks(1000, 1));
+        int expected = 1000;
+        for (int level = 0; level < pyramid.levelCount(); level++) {
+            assertEquals(expected, pyramid.levelSize(level));
+            expected = (expected + 1) / 2;
+        }
+        assertEquals(1, pyramid.levelSize(pyramid.levelCount() - 1));
+    }
+
+    @Test
+    public void fullRangeAtBaseResolutionIsExact() {
+        Peaks base = randomPeaks(777, 2);
+        PeakPyramid pyramid = PeakPyramid.build(base);
+        float[] dst = new float[777];
+        pyramid.peaks(0, 1, dst, 777);
+        for (int i = 0; i < 777; i++) {
+            assertEquals(base.peak(i), dst[i], 0f);
+        }
+    }
+
+    @Test
+    public void anyBarCountCoversTheTrueRange() {
+        Peaks base = randomPeaks(4096, 3);
+        PeakPyramid pyramid = PeakPyramid.build(base);
+        double[][] ranges = {{0, 1}, {0.25, 0.5}, {0.9, 1}, {0.3331, 0.3342}};
+        int[] counts = {1, 7, 100, 333, 1024, 5000};
+        for (double[] range : ranges) {
+            for (int count : counts) {
+                float[] lo = new float[count];
+                float[] hi = new float[count];
+                pyramid.minMax(range[0], range[1], lo, hi, count);
+                for (int i = 0; i < count; i++) {
+                    //每个小条覆盖第0层中的范围，查询结果必须包含其中的极值
+                    double s = (range[0] + (range[1] - range[0]) * i / count) * 4096;
+                    double e = (range[0] + (range[1] - range[0]) * (i + 1) / count) * 4096;
+                    int from = Math.min(4095, (int) s);
+                    int to = Math.max(from + 1, (int) Math.ceil(e));
+                    for (int b = from; b < to; b++) {
+                        assertTrue(lo[i] <= base.min(b));
+                        assertTrue(hi[i] >= base.max(b));
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    public void zeroOutsideTheData() {
+        PeakPyramid pyramid = PeakPyramid.fromLevels(new float[]{0.5f, 1f});
+        float[] dst = {9f, 9f};
+        pyramid.peaks(1, 2, dst, 2);
+        assertEquals(0f, dst[0], 0f);
+        assertEquals(0f, dst[1], 0f);
+
+        PeakPyramid empty = PeakPyramid.fromLevels(new float[0]);
+        empty.peaks(0, 1, dst, 2);
+        assertEquals(0f, dst[0], 0f);
+    }
+
+    @Test
+    public void chunkedUpdatesMatchTheFullBuild() {
+        Peaks base = randomPeaks(1001, 4);
+        PeakPyramid full = PeakPyramid.build(base);
+        PeakPyramid progressive = PeakPyramid.create(base.size());
+        Random random = new Random(5);
+        for (int from = 0; from < base.size(); ) {
+            int to = Math.min(base.size(), from + 1 + random.nextInt(50));
+            progressive.update(base, from, to);
+            from = to;
+        }
+        for (int count : new int[]{1, 3, 64, 500, 1001}) {
+            float[] lo = new float[count];
+            float[] hi = new float[count];
+            float[] expectedLo = new float[count];
+            float[] expectedHi = new float[count];
+            progressive.minMax(0, 1, lo, hi, count);
+            full.minMax(0, 1, expectedLo, expectedHi, count);
+            for (int i = 0; i < count; i++) {
+                assertEquals(expectedLo[i], lo[i], 0f);
+                assertEquals(expectedHi[i], hi[i], 0f);
+            }
+        }
+    }
+
+    private static Peaks randomPeaks(int size, long seed) {
+        Random random = new Random(seed);
+        Peaks peaks = new Peaks(size);
+        for (int i = 0; i < size; i++) {
+            float a = random.nextFloat();
+            peaks.set(i, -a * random.nextFloat(), a, a / 2);
+        }
+        return peaks;
+    }
+}
@@ -0,0 +1,144 @@
+package com.mostone.waveseek.core;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * {@link ProgressMailbox}在多生产者并发写入下的行为
+ */
+public class ProgressMailboxTest {
+
+    private static final int PRODUCERS = 8;
+    private static final int UPDATES_PER_PRODUCER = 200_000;
+    //位置编码为 producer * STRIDE + 序号，方便校验来源和顺序
+    private static final long STRIDE = 1L << 32;
+
+    @Test
+    public void coalescesUpdatesUntilPolled() {
+        ProgressMailbox mailbox = new ProgressMailbox();
+        assertEquals(ProgressMailbox.NONE, mailbox.poll());
+
+        assertTrue(mailbox.offer(10, 1000));
+        assertFalse(mailbox.offer(20, 1000));
+        assertFalse(mailbox.offer(30, 2000));
+
+        assertEquals(30, mailbox.poll());
+        assertEquals(2000, mailbox.duration());
+        assertEquals(ProgressMailbox.NONE, mailbox.poll());
+
+        assertTrue(mailbox.offer(40, 2000));
+    }
+
+    @Test
+    public void concurrentProducersPublishLatestValue() throws Exception {
+        final ProgressMailbox mailbox = new ProgressMailbox();
+        final CountDownLatch start = new CountDownLatch(1);
+        final CountDownLatch done = new CountDownLatch(PRODUCERS);
+        final AtomicInteger scheduleRequests = new AtomicInteger();
+
+        Thread[] producers = new Thread[PRODUCERS];
+        for (int p = 0; p < PRODUCERS; p++) {
+            final long base = p * STRIDE;
+            producers[p] = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        start.await();
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                    for (int i = 0; i < UPDATES_PER_PRODUCER; i++) {
+                        if (mailbox.offer(base + i, 1000)) scheduleRequests.incrementAndGet();
+                    }
+                    done.countDown();
+                }
+            });
+            producers[p].start();
+        }
+
+        long[] lastSeen = new long[PRODUCERS];
+        Arrays.fill(lastSeen, -1);
+        int polls = 0;
+        start.countDown();
+        while (done.getCount() > 0) {
+            drain(mailbox, lastSeen);
+            polls++;
+        }
+        for (Thread t : producers) t.join();
+        drain(mailbox, lastSeen);
+        polls++;
+
+        //两次安排之间必然有一次取值，安排次数不会超过帧数
+        assertTrue(scheduleRequests.get() <= polls + 1);
+        //最后一次写入一定来自某个生产者的最后一个值
+        boolean sawFinal = false;
+        for (long seen : lastSeen) {
+            if (seen == UPDATES_PER_PRODUCER - 1) sawFinal = true;
+        }
+        assertTrue(sawFinal);
+        assertEquals(ProgressMailbox.NONE, mailbox.poll());
+    }
+
+    @Test
+    public void positionAndDurationArePublishedTogether() throws Exception {
+        final ProgressMailbox mailbox = new ProgressMailbox();
+        final CountDownLatch start = new CountDownLatch(1);
+        final CountDownLatch done = new CountDownLatch(2);
+        //两个生产者的位置区间不重叠，由位置就能知道应有的时长
+        Thread shortTrack = offerLoop(mailbox, start, done, 0, 1000);
+        Thread longTrack = offerLoop(mailbox, start, done, 5000, 10000);
+
+        int mismatches = 0;
+        start.countDown();
+        while (done.getCount() > 0) {
+            long position = mailbox.poll();
+            if (position == ProgressMailbox.NONE) continue;
+            long expected = position < 1000 ? 1000 : 10000;
+            if (mailbox.duration() != expected) mismatches++;
+        }
+        shortTrack.join();
+        longTrack.join();
+        assertEquals(0, mismatches);
+    }
+
+    private static Thread offerLoop(final ProgressMailbox mailbox, final CountDownLatch start,
+                                    final CountDownLatch done, final long base, final long duration) {
+        Thread thread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                for (int i = 0; i < UPDATES_PER_PRODUCER; i++) {
+                    mailbox.offer(base + i % 1000, duration);
+                }
+                done.countDown();
+            }
+        });
+        thread.start();
+        return thread;
+    }
+
+    /**
+     * 模拟一帧：取值并校验同一生产者的值不会倒退
+     */
+    private static void drain(ProgressMailbox mailbox, long[] lastSeen) {
+        long value = mailbox.poll();
+        if (value == ProgressMailbox.NONE) return;
+        int producer = (int) (value / STRIDE);
+        long index = value % STRIDE;
+        assertTrue(producer >= 0 && producer < PRODUCERS);
+        assertTrue("producer " + producer + " went backwards", index > lastSeen[producer]);
+        assertEquals(1000, mailbox.duration());
+        lastSeen[producer] = index;
+    }
+}
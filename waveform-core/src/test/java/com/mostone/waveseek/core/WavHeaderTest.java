@@ -0,0 +1,112 @@
+package com.mostone.waveseek.core;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * {@link WavHeader}对未回填或错误的data块长度的处理
+ */
+public class WavHeaderTest {
+
+    private static final int CHANNELS = 2;
+    private static final int FRAMES = 1000;
+    private static final int FRAME_SIZE = CHANNELS * 2;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void exactDataSize() throws IOException {
+        WavHeader header = read(FRAMES * FRAME_SIZE, FRAMES * FRAME_SIZE);
+        assertEquals(44, header.dataOffset());
+        assertEquals(FRAMES, header.frames());
+    }
+
+    @Test
+    public void zeroDataSizeReadsToEndOfFile() throws IOException {
+        //录音中断，末尾还有半帧
+        WavHeader header = read(0, FRAMES * FRAME_SIZE + 3);
+        assertEquals(FRAMES * FRAME_SIZE, header.dataLength());
+        assertEquals(FRAMES, header.frames());
+    }
+
+    @Test
+    public void maxDataSizeReadsToEndOfFile() throws IOException {
+        WavHeader header = read(0xFFFFFFFF, FRAMES * FRAME_SIZE);
+        assertEquals(FRAMES, header.frames());
+    }
+
+    @Test
+    public void zeroRiffAndDataSizeReadsToEndOfFile() throws IOException {
+        WavHeader header = read(0, 0, new byte[FRAMES * FRAME_SIZE]);
+        assertEquals(FRAMES, header.frames());
+    }
+
+    @Test
+    public void emptyDataChunkBeforeListChunkIsEmpty() throws IOException {
+        ByteBuffer list = ByteBuffer.allocate(8 + 26).order(ByteOrder.LITTLE_ENDIAN);
+        list.put("LIST".getBytes("US-ASCII")).putInt(26)
+                .put("INFOINAM".getBytes("US-ASCII")).putInt(14).put("empty take\0\0\0\0".getBytes("US-ASCII"));
+        WavHeader header = read(36 + list.capacity(), 0, list.array());
+        assertEquals(44, header.dataOffset());
+        assertEquals(0, header.dataLength());
+        assertEquals(0, header.frames());
+    }
+
+    @Test
+    public void oversizedDataSizeIsClampedToTheFile() throws IOException {
+        WavHeader header = read(FRAMES * FRAME_SIZE * 2, FRAMES * FRAME_SIZE);
+        assertEquals(FRAMES, header.frames());
+    }
+
+    /**
+     * 写入16位双声道的WAV头，data块长度为dataSize，之后是pcmBytes个字节的数据
+     */
+    private WavHeader read(int dataSize, int pcmBytes) throws IOException {
+        return read(36 + dataSize, dataSize, new byte[pcmBytes]);
+    }
+
+    /**
+     * @param body data块头之后的全部内容
+     */
+    private WavHeader read(int riffSize, int dataSize, byte[] body) throws IOException {
+        ByteBuffer buf = ByteBuffer.allocate(44 + body.length).order(ByteOrder.LITTLE_ENDIAN);
+        buf.put("RIFF".getBytes("US-ASCII")).putInt(riffSize).put("WAVE".getBytes("US-ASCII"));
+        buf.put("fmt ".getBytes("US-ASCII")).putInt(16)
+                .putShort((short) 1)
+                .putShort((short) CHANNELS)
+                .putInt(16000)
+                .putInt(16000 * FRAME_SIZE)
+                .putShort((short) FRAME_SIZE)
+                .putShort((short) 16);
+        buf.put("data".getBytes("US-ASCII")).putInt(dataSize);
+        buf.put(body);
+        buf.flip();
+
+        File file = folder.newFile();
+        FileOutputStream out = new FileOutputStream(file);
+        try {
+            out.getChannel().write(buf);
+        } finally {
+            out.close();
+        }
+        RandomAccessFile raf = new RandomAccessFile(file, "r");
+        try {
+            WavHeader header = WavHeader.read(raf.getChannel());
+            assertEquals(PcmFormat.Encoding.PCM_16, header.format().encoding());
+            return header;
+        } finally {
+            raf.close();
+        }
+    }
+}
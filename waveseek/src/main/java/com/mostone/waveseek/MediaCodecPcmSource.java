@@ -0,0 +1,240 @@
+package com.mostone.waveseek;
+
+import android.content.Context;
+import android.media.AudioFormat;
+import android.media.MediaCodec;
+import android.media.MediaExtractor;
+import android.media.MediaFormat;
+import android.net.Uri;
+import android.os.Build;
+
+import com.mostone.waveseek.core.PcmFormat;
+import com.mostone.waveseek.core.PcmSource;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * ================================================
+ * 描    述: 用MediaExtractor + MediaCodec把AAC/MP3/Opus等压缩音频解码为PCM
+ * <p>
+ * 使用同步模式，解码器的输出缓冲区直接拷贝到调用方的缓冲区，读取过程不产生分配。
+ * 一个输出缓冲区放不下时分多次读取
+ * ================================================
+ */
+public final class MediaCodecPcmSource implements PcmSource {
+
+    private static final long TIMEOUT_US = 10000;
+
+    private final MediaExtractor extractor;
+    private final MediaCodec codec;
+    private final MediaFormat trackFormat;
+    private final long durationUs;
+    private final MediaCodec.BufferInfo info = new MediaCodec.BufferInfo();
+    //API 21以下只能通过数组获取缓冲区，之后按索引获取
+    private ByteBuffer[] inputBuffers;
+    private ByteBuffer[] outputBuffers;
+
+    private boolean isInputDone = false;
+    private boolean isOutputDone = false;
+    //尚未读完的输出缓冲区
+    private int pendingIndex = -1;
+    private ByteBuffer pendingBuffer;
+    private int pendingOffset;
+    private int pendingEnd;
+
+    private volatile PcmFormat format;
+    private volatile long estimatedFrames;
+
+    public MediaCodecPcmSource(String path) throws IOException {
+        this(newExtractor(null, null, path));
+    }
+
+    public MediaCodecPcmSource(Context context, Uri uri) throws IOException {
+        this(newExtractor(context, uri, null));
+    }
+
+    private MediaCodecPcmSource(MediaExtractor extractor) throws IOException {
+        this.extractor = extractor;
+        MediaFormat audioFormat = null;
+        for (int i = 0; i < extractor.getTrackCount(); i++) {
+            MediaFormat f = extractor.getTrackFormat(i);
+            String mime = f.getString(MediaFormat.KEY_MIME);
+            if (mime != null && mime.startsWith("audio/")) {
+                extractor.selectTrack(i);
+                audioFormat = f;
+                break;
+            }
+        }
+        if (audioFormat == null) {
+            extractor.release();
+            throw new IOException("No audio track");
+        }
+        trackFormat = audioFormat;
+        durationUs = audioFormat.containsKey(MediaFormat.KEY_DURATION)
+                ? audioFormat.getLong(MediaFormat.KEY_DURATION) : -1L;
+        //桶按总时长划分，部分ADTS/OGG流没有时长，无法提前划分
+        if (durationUs <= 0) {
+            extractor.release();
+            throw new IOException("Audio track has no duration");
+        }
+
+        MediaCodec decoder = null;
+        try {
+            decoder = MediaCodec.createDecoderByType(audioFormat.getString(MediaFormat.KEY_MIME));
+            decoder.configure(audioFormat, null, null, 0);
+            decoder.start();
+        } catch (IOException | RuntimeException e) {
+            if (decoder != null) decoder.release();
+            extractor.release();
+            throw e instanceof IOException ? (IOException) e : new IOException("Cannot start decoder", e);
+        }
+        codec = decoder;
+        if (Build.VERSION.SDK_INT < Build.VERSION_CODES.LOLLIPOP) {
+            inputBuffers = legacyInputBuffers();
+            outputBuffers = legacyOutputBuffers();
+        }
+    }
+
+    @SuppressWarnings("deprecation")
+    private ByteBuffer[] legacyInputBuffers() {
+        return codec.getInputBuffers();
+    }
+
+    @SuppressWarnings("deprecation")
+    private ByteBuffer[] legacyOutputBuffers() {
+        return codec.getOutputBuffers();
+    }
+
+    private ByteBuffer inputBuffer(int index) {
+        return inputBuffers != null ? inputBuffers[index] : codec.getInputBuffer(index);
+    }
+
+    private ByteBuffer outputBuffer(int index) {
+        return outputBuffers != null ? outputBuffers[index] : codec.getOutputBuffer(index);
+    }
+
+    private static MediaExtractor newExtractor(Context context, Uri uri, String path) throws IOException {
+        MediaExtractor extractor = new MediaExtractor();
+        try {
+            if (path != null) {
+                extractor.setDataSource(path);
+            } else {
+                extractor.setDataSource(context, uri, null);
+            }
+        } catch (IOException e) {
+            extractor.release();
+            throw e;
+        }
+        return extractor;
+    }
+
+    @Override
+    public int read(ByteBuffer dst) throws IOException {
+        try {
+            while (true) {
+                if (Thread.interrupted()) throw new InterruptedIOException("Decode interrupted");
+                if (pendingIndex >= 0) {
+                    int frameSize = format.frameSize();
+                    int n = Math.min(pendingEnd - pendingOffset, dst.remaining() - dst.remaining() % frameSize);
+                    if (n <= 0) return 0;
+                    ByteBuffer out = pendingBuffer;
+                    out.limit(pendingOffset + n).position(pendingOffset);
+                    dst.put(out);
+                    pendingOffset += n;
+                    if (pendingOffset >= pendingEnd) {
+                        codec.releaseOutputBuffer(pendingIndex, false);
+                        pendingIndex = -1;
+                        pendingBuffer = null;
+                    }
+                    return n;
+                }
+                if (isOutputDone) return -1;
+                feedInput();
+                drainOutput();
+            }
+        } catch (IllegalStateException e) {
+            //包括API 21起的MediaCodec.CodecException
+            throw new IOException("Decoder failed", e);
+        }
+    }
+
+    private void feedInput() {
+        if (isInputDone) return;
+        //不等待输入缓冲区，避免耽误取出输出
+        int index = codec.dequeueInputBuffer(0);
+        if (index < 0) return;
+        ByteBuffer in = inputBuffer(index);
+        in.clear();
+        int size = extractor.readSampleData(in, 0);
+        if (size < 0) {
+            codec.queueInputBuffer(index, 0, 0, 0, MediaCodec.BUFFER_FLAG_END_OF_STREAM);
+            isInputDone = true;
+        } else {
+            codec.queueInputBuffer(index, 0, size, extractor.getSampleTime(), 0);
+            extractor.advance();
+        }
+    }
+
+    @SuppressWarnings("deprecation")
+    private void drainOutput() {
+        int index = codec.dequeueOutputBuffer(info, TIMEOUT_US);
+        if (index >= 0) {
+            if ((info.flags & MediaCodec.BUFFER_FLAG_END_OF_STREAM) != 0) {
+                isOutputDone = true;
+            }
+            if (info.size > 0) {
+                if (format == null) updateFormat(trackFormat);
+                pendingIndex = index;
+                pendingBuffer = outputBuffer(index);
+                pendingOffset = info.offset;
+                pendingEnd = info.offset + info.size;
+            } else {
+                codec.releaseOutputBuffer(index, false);
+            }
+        } else if (index == MediaCodec.INFO_OUTPUT_BUFFERS_CHANGED) {
+            //只在API 21以下出现
+            if (outputBuffers != null) outputBuffers = legacyOutputBuffers();
+        } else if (index == MediaCodec.INFO_OUTPUT_FORMAT_CHANGED) {
+            //格式只在输出数据之前确定，之后不再改变
+            if (format == null) updateFormat(codec.getOutputFormat());
+        }
+    }
+
+    private void updateFormat(MediaFormat outputFormat) {
+        PcmFormat.Encoding encoding = PcmFormat.Encoding.PCM_16;
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.N
+                && outputFormat.containsKey(MediaFormat.KEY_PCM_ENCODING)) {
+            int pcmEncoding = outputFormat.getInteger(MediaFormat.KEY_PCM_ENCODING);
+            if (pcmEncoding == AudioFormat.ENCODING_PCM_FLOAT) encoding = PcmFormat.Encoding.FLOAT_32;
+            else if (pcmEncoding == AudioFormat.ENCODING_PCM_8BIT) encoding = PcmFormat.Encoding.PCM_8;
+        }
+        int channels = outputFormat.getInteger(MediaFormat.KEY_CHANNEL_COUNT);
+        int sampleRate = outputFormat.getInteger(MediaFormat.KEY_SAMPLE_RATE);
+        estimatedFrames = durationUs * sampleRate / 1000000L;
+        format = new PcmFormat(encoding, channels, sampleRate, ByteOrder.nativeOrder());
+    }
+
+    @Override
+    public PcmFormat format() {
+        return format;
+    }
+
+    @Override
+    public long estimatedFrames() {
+        return estimatedFrames;
+    }
+
+    @Override
+    public void close() {
+        try {
+            codec.stop();
+        } catch (IllegalStateException e) {
+            //解码器出错后stop可能失败，仍需释放
+        }
+        codec.release();
+        extractor.release();
+    }
+}
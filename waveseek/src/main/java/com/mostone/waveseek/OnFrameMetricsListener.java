@@ -0,0 +1,25 @@
+package com.mostone.waveseek;
+
+import android.view.View;
+
+/**
+ * ================================================
+ * 描    述: 波形View的逐帧指标回调，在UI线程的onDraw中调用
+ * <p>
+ * 未设置监听时不做任何统计；参数全部为基本类型，回调本身不产生分配
+ * ================================================
+ */
+public interface OnFrameMetricsListener {
+
+    /**
+     * @param view          绘制的View
+     * @param drawTimeNanos 本帧onDraw耗时(计算+绘制命令录制)
+     * @param barCount      本帧绘制的小条数量
+     * @param skippedFrames 距上一次绘制之间没有绘制的vsync数量，含帧率限制主动跳过的帧。
+     *                      只对连续动画的{@link WaveView}有意义，{@link WaveSeekBar}按需重绘，固定为0
+     * @param cacheHits     本帧命中缓存(小条缓存图层或预计算相位表)的次数
+     * @param cacheMisses   本帧未命中缓存、需要重新计算的次数
+     */
+    void onFrameMetrics(View view, long drawTimeNanos, int barCount, int skippedFrames,
+                        int cacheHits, int cacheMisses);
+}
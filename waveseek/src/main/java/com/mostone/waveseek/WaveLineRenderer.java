@@ -0,0 +1,632 @@
+package com.mostone.waveseek;
+
+import android.content.Context;
+import android.content.res.TypedArray;
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Paint;
+import android.graphics.PorterDuff;
+import android.graphics.RectF;
+import android.util.AttributeSet;
+import android.view.View;
+
+import com.mostone.waveseek.core.AmplitudeRing;
+import com.mostone.waveseek.core.BarGeometry;
+import com.mostone.waveseek.core.BarHistory;
+import com.mostone.waveseek.core.SineWave;
+import com.mostone.waveseek.core.VolumeSmoother;
+import com.mostone.waveseek.widget.R;
+
+/**
+ * ================================================
+ * 描    述: 波浪曲线和录音模式的绘制内容，{@link WaveView}和{@link WaveTextureView}的渲染线程各自持有一个
+ * <p>
+ * 不是View，只在创建时读取一次属性，之后不依赖Context。除{@link #setVolume}和offerAmplitude*外，
+ * 所有方法只能在同一个线程调用：WaveView在UI线程，WaveTextureView在渲染线程。
+ * 音量经由volatile字段、振幅经由{@link AmplitudeRing}从其他线程传入
+ * ================================================
+ */
+final class WaveLineRenderer implements WaveRenderer {
+
+    private static final float DEFAULT_OFFSET_SPEED = 666F;
+    private static final int DEFAULT_SENSIBILITY = 5;
+
+    //指标回调中报告的View，只读取引用
+    private final View host;
+
+    //控制向右偏移速度，越小偏移速度越快
+    private float offsetSpeed;
+    //平滑改变的音量值
+    private float volume = 0;
+
+    //用户设置的音量，[0,100]，可在任意线程写入
+    private volatile int targetVolume = 50;
+    //录音线程写入的振幅，每帧取走一次。缓冲区较大，由录音线程在第一次写入时创建
+    private volatile AmplitudeRing amplitudeRing;
+
+    //每次平滑改变的音量单元
+    private float perVolume;
+
+    //灵敏度，越大越灵敏[1,10]
+    private int sensibility;
+
+    //背景色
+    private int backGroundColor = Color.WHITE;
+
+    private final Paint paint = new Paint();
+
+    {
+        //防抖动
+        paint.setDither(true);
+        //抗锯齿，降低分辨率，提高绘制效率
+        paint.setAntiAlias(true);
+    }
+
+    //不同函数曲线系数
+    private float[] pathFuncs = {
+            1.4f, 0.35f, 0.1f, -0.1f
+    };
+
+    //小条几何数据
+    private final BarGeometry geometry = new BarGeometry();
+    //波形函数
+    private final SineWave sineWave = new SineWave();
+    //布局是否需要重新计算
+    private boolean isLayoutDirty = true;
+    //画布宽高
+    private int width, height;
+    //画布中心的高度
+    private int centerHeight;
+    //振幅
+    private float amplitude;
+    //连线动画结束标记
+    private boolean isPrepareLineAnimEnd = false;
+    //连线动画位移
+    private int lineAnimX = 0;
+    //是否开启准备动画
+    private boolean isOpenPrepareAnim = false;
+
+    //逐个绘制小条时复用的矩形
+    private final RectF barRect = new RectF();
+    //小条宽度
+    private float littleBarWidth;
+    //小条最小高度
+    private float littleBarMinHeight;
+    //小条间隙宽度
+    private float gapWidth;
+    private OnFrameMetricsListener onFrameMetricsListener;
+    //上次绘制以来未绘制的vsync数量
+    private int skippedFrames = 0;
+    //一个vsync周期
+    private long vsyncNanos = 1000000000L / 60;
+    //批量绘制小条的画笔，线宽为小条宽度，圆头
+    private final Paint linePaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+    //是否一次drawLines批量绘制所有小条，false时逐个drawRoundRect
+    private boolean isBatchedDraw = true;
+
+    //录音模式：新的小条从右侧进入，历史向左滚动
+    private boolean isRecorderMode = false;
+    //最近的小条高度，[0,1]，第k个小条固定绘制在缓存的第k % 槽位数个槽位
+    private final BarHistory barHistory = new BarHistory(0);
+    //槽位比可见的小条多一个，用于平滑滚动
+    private int recorderSlots;
+    private final BarGeometry recorderGeometry = new BarGeometry();
+    private float recorderScale;
+    //每个小条代表的时长，0表示只由pushBar添加
+    private int barIntervalMillis = 50;
+    //下一个小条在动画时间轴上的时刻
+    private long nextBarElapsedNanos;
+    //当前小条时段内振幅的最大值，-1表示还没有振幅
+    private float pendingBarLevel = -1f;
+    //环形的小条缓存，ALPHA_8，绘制时由画笔着色
+    private Bitmap recorderCache;
+    private Canvas recorderCanvas;
+    private boolean isRecorderCacheDirty = true;
+    //已绘制到缓存中的小条数量
+    private long drawnBars;
+
+    private boolean isStop = true;
+    //动画运行时长，只在动画实际运行时累加，暂停后恢复不会跳变
+    private long animElapsedNanos = 0L;
+    //上一帧的vsync时间，0表示刚开始或刚恢复
+    private long lastFrameNanos = 0L;
+    //上次绘制时的动画时长
+    private long lastDrawElapsedNanos = 0L;
+    //目标帧率，0表示跟随屏幕刷新率
+    private int targetFrameRate = 0;
+    //上次请求重绘时的vsync时间
+    private long lastInvalidateFrameNanos = 0L;
+
+    /**
+     * 读取wv*属性，需在UI线程创建
+     *
+     * @param host 指标回调中报告的View
+     */
+    WaveLineRenderer(Context context, AttributeSet attrs, View host) {
+        this.host = host;
+        TypedArray t = context.obtainStyledAttributes(attrs, R.styleable.WaveView);
+        backGroundColor = t.getColor(R.styleable.WaveView_wvBackgroundColor, Color.WHITE);
+        int lineColor = t.getColor(R.styleable.WaveView_wvLineColor, Color.parseColor("#2ED184"));
+        offsetSpeed = t.getFloat(R.styleable.WaveView_wvMoveSpeed, DEFAULT_OFFSET_SPEED);
+        sensibility = t.getInt(R.styleable.WaveView_wvSensibility, DEFAULT_SENSIBILITY);
+        littleBarWidth = t.getDimension(R.styleable.WaveView_wvLitterBarWidth, 5f);
+        littleBarMinHeight = t.getDimension(R.styleable.WaveView_wvLitterBarMinHeight, 5f);
+        gapWidth = t.getDimension(R.styleable.WaveView_wvGapWidth, 5f);
+        t.recycle();
+        checkSensibilityValue();
+        paint.setStyle(Paint.Style.FILL);
+        paint.setColor(lineColor);
+        linePaint.setStyle(Paint.Style.STROKE);
+        linePaint.setStrokeCap(Paint.Cap.ROUND);
+        linePaint.setStrokeWidth(littleBarWidth);
+        linePaint.setColor(lineColor);
+    }
+
+    @Override
+    public void onSurfaceChanged(int width, int height) {
+        isLayoutDirty = true;
+    }
+
+    @Override
+    public boolean onFrame(long frameTimeNanos) {
+        return !isStop && advanceFrame(frameTimeNanos);
+    }
+
+    @Override
+    public void onDraw(Canvas canvas) {
+        canvas.drawColor(backGroundColor, PorterDuff.Mode.SRC);
+        draw(canvas);
+    }
+
+    @Override
+    public boolean isAnimating() {
+        return !isStop;
+    }
+
+    /**
+     * 帧回调中断后调用，下一帧重新开始计时，中断的时间不计入动画
+     */
+    @Override
+    public void onPause() {
+        lastFrameNanos = 0L;
+        lastInvalidateFrameNanos = 0L;
+    }
+
+    /**
+     * 绘制一帧，不绘制背景
+     */
+    void draw(Canvas canvas) {
+        long drawStart = onFrameMetricsListener != null ? System.nanoTime() : 0L;
+        float millisPassed = animElapsedNanos / 1000000f;
+        float offset = millisPassed/offsetSpeed; //水平偏移
+
+        if (isLayoutDirty) {
+            initDraw(canvas);
+        }
+
+        if (isRecorderMode) {
+            boolean traced = WaveTrace.begin("WaveView#recorder");
+            boolean cacheHit = !isRecorderCacheDirty;
+            int newBars = drawRecorder(canvas);
+            WaveTrace.end(traced);
+            if (onFrameMetricsListener != null) {
+                onFrameMetricsListener.onFrameMetrics(host, System.nanoTime() - drawStart,
+                        newBars, skippedFrames, cacheHit ? 1 : 0, cacheHit ? 0 : 1);
+            }
+            skippedFrames = 0;
+            return;
+        }
+
+        if (lineAnim()/*暂时都会是true*/) {
+
+            drainAmplitudes();
+            softerChangeVolume(); //音量改变波动
+
+            boolean traced = WaveTrace.begin("WaveView#geometry");
+            float scale = volume >= 20
+                    ? amplitude * pathFuncs[0] * volume * 0.01f
+                    : amplitude * pathFuncs[0] * 100 * 0.01f; //未开始播放时 最大波浪
+            sineWave.apply(geometry, offset, scale);
+            WaveTrace.end(traced);
+
+            traced = WaveTrace.begin("WaveView#draw");
+            drawBars(canvas, geometry, 0, geometry.barCount());
+            WaveTrace.end(traced);
+
+            if (onFrameMetricsListener != null) {
+                boolean tableHit = sineWave.hasPhaseTable();
+                onFrameMetricsListener.onFrameMetrics(host, System.nanoTime() - drawStart,
+                        geometry.barCount(), skippedFrames, tableHit ? 1 : 0, tableHit ? 0 : 1);
+            }
+            skippedFrames = 0;
+        }
+    }
+
+    /**
+     * 绘制geometry中[from, to)范围内的小条
+     */
+    private void drawBars(Canvas canvas, BarGeometry geometry, int from, int to) {
+        if (isBatchedDraw) {
+            canvas.drawLines(geometry.lines(), from * BarGeometry.STRIDE, (to - from) * BarGeometry.STRIDE, linePaint);
+        } else {
+            float[] rects = geometry.rects();
+            for (int j = from * BarGeometry.STRIDE; j < to * BarGeometry.STRIDE; j += BarGeometry.STRIDE) {
+                barRect.set(rects[j], rects[j + 1], rects[j + 2], rects[j + 3]);
+                canvas.drawRoundRect(barRect, littleBarWidth, littleBarWidth, paint);
+            }
+        }
+    }
+
+    /**
+     * 录音模式：把上一帧以来新增的小条画进环形缓存，再分两段合成到画布，
+     * 每帧的开销只与新增的小条数量有关
+     *
+     * @return 本帧新绘制的小条数量
+     */
+    private int drawRecorder(Canvas canvas) {
+        collectBars();
+        if (!ensureRecorderCache()) return 0;
+        long count = barHistory.count();
+        //已被覆盖的小条不再绘制
+        long from = Math.max(drawnBars, count - barHistory.size());
+        for (long k = from; k < count; k++) {
+            drawRecorderBar(k);
+        }
+        drawnBars = count;
+
+        //两个小条之间按时间平滑滚动
+        float pitch = littleBarWidth + gapWidth;
+        float fraction = 0f;
+        if (barIntervalMillis > 0) {
+            long remaining = nextBarElapsedNanos - animElapsedNanos;
+            fraction = Math.max(0f, Math.min(1f, 1f - remaining / (barIntervalMillis * 1000000f)));
+        }
+        //最旧的槽位即下一个要覆盖的槽位，从左侧开始绘制，最新的小条贴着右边界
+        int oldest = barHistory.slot(count);
+        float left = width - fraction * pitch - recorderSlots * pitch;
+        float splitX = left + (recorderSlots - oldest) * pitch;
+        drawRecorderPart(canvas, left - oldest * pitch, left, splitX);
+        if (oldest > 0) {
+            drawRecorderPart(canvas, splitX, splitX, splitX + oldest * pitch);
+        }
+        return (int) (count - from);
+    }
+
+    /**
+     * 取走上一帧以来的振幅，按时间把经过的时段作为新的小条加入历史
+     */
+    private void collectBars() {
+        AmplitudeRing ring = amplitudeRing;
+        if (ring != null && ring.drain() > 0) {
+            pendingBarLevel = Math.max(pendingBarLevel, ring.peak());
+        }
+        if (barIntervalMillis <= 0 || animElapsedNanos < nextBarElapsedNanos) return;
+        long interval = barIntervalMillis * 1000000L;
+        long due = (animElapsedNanos - nextBarElapsedNanos) / interval + 1;
+        nextBarElapsedNanos += due * interval;
+        //没有振幅输入时使用setVolume设置的音量
+        float level = pendingBarLevel >= 0f ? pendingBarLevel : targetVolume / 100f;
+        pendingBarLevel = -1f;
+        //长时间没有绘制时最多补满一屏
+        for (long i = Math.min(due, recorderSlots); i > 0; i--) {
+            barHistory.push(level);
+        }
+    }
+
+    private void drawRecorderBar(long index) {
+        float pitch = littleBarWidth + gapWidth;
+        int slot = barHistory.slot(index);
+        recorderGeometry.setBar(slot, barHistory.get(index) * recorderScale);
+        int count = recorderCanvas.save();
+        recorderCanvas.clipRect(slot * pitch, 0f, (slot + 1) * pitch, recorderCache.getHeight());
+        recorderCanvas.drawColor(Color.TRANSPARENT, PorterDuff.Mode.CLEAR);
+        drawBars(recorderCanvas, recorderGeometry, slot, slot + 1);
+        recorderCanvas.restoreToCount(count);
+    }
+
+    private void drawRecorderPart(Canvas canvas, float dx, float clipLeft, float clipRight) {
+        int count = canvas.save();
+        canvas.clipRect(clipLeft, 0f, clipRight, height);
+        canvas.drawBitmap(recorderCache, dx, 0f, paint);
+        canvas.restoreToCount(count);
+    }
+
+    /**
+     * @return 缓存是否可用，重建后历史中的小条会在本帧全部重新绘制
+     */
+    private boolean ensureRecorderCache() {
+        int w = (int) Math.ceil(recorderSlots * (littleBarWidth + gapWidth));
+        if (recorderSlots <= 0 || w <= 0 || height <= 0) return false;
+        if (recorderCache != null && !isRecorderCacheDirty) return true;
+        if (recorderCache == null || recorderCache.getWidth() != w || recorderCache.getHeight() != height) {
+            release();
+            recorderCache = Bitmap.createBitmap(w, height, Bitmap.Config.ALPHA_8);
+            recorderCanvas = new Canvas(recorderCache);
+        } else {
+            recorderCache.eraseColor(Color.TRANSPARENT);
+        }
+        drawnBars = barHistory.count() - barHistory.size();
+        isRecorderCacheDirty = false;
+        return true;
+    }
+
+    /**
+     * 释放录音模式的小条缓存，下次绘制时重建
+     */
+    void release() {
+        if (recorderCache != null) {
+            recorderCache.recycle();
+            recorderCache = null;
+            recorderCanvas = null;
+        }
+        isRecorderCacheDirty = true;
+    }
+
+    //检查灵敏度值是否合法
+    private void checkSensibilityValue() {
+        if (sensibility > 10) sensibility = 10;
+        if (sensibility < 1) sensibility = 1;
+    }
+
+    /**
+     * 上一帧以来写入的振幅取最大值作为目标音量，没有新振幅时保持不变
+     */
+    private void drainAmplitudes() {
+        AmplitudeRing ring = amplitudeRing;
+        if (ring != null && ring.drain() > 0) {
+            targetVolume = Math.min(100, Math.round(ring.peak() * 100));
+        }
+    }
+
+    /**
+     * 只在录音线程调用，只有一个写入方，不需要同步，volatile写保证绘制线程看到完整的对象
+     */
+    private AmplitudeRing producerRing() {
+        AmplitudeRing ring = amplitudeRing;
+        if (ring == null) {
+            ring = new AmplitudeRing();
+            amplitudeRing = ring;
+        }
+        return ring;
+    }
+
+    /**
+     * 使曲线振幅有较大改变时动画过渡自然，变化速度只和经过的时间有关，与帧率无关
+     */
+    private void softerChangeVolume() {
+        float elapsedMillis = (animElapsedNanos - lastDrawElapsedNanos) / 1000000f;
+        lastDrawElapsedNanos = animElapsedNanos;
+        volume = VolumeSmoother.approach(volume, targetVolume, perVolume, elapsedMillis);
+    }
+
+    /**
+     * 连线动画
+     *
+     * @return whether animation is end
+     */
+    private boolean lineAnim() {
+
+        if (isPrepareLineAnimEnd || !isOpenPrepareAnim) return true;
+        lineAnimX += width / 60;
+        if (lineAnimX > width / 2) {
+            isPrepareLineAnimEnd = true;
+
+            return true;
+        }
+
+        return false;
+    }
+
+    /**
+     * 按vsync时间推进动画
+     *
+     * @return 本帧是否需要绘制
+     */
+    boolean advanceFrame(long frameTimeNanos) {
+        //frameTimeNanos与System.nanoTime同一时基，单调递增，不受系统时间修改影响
+        if (lastFrameNanos != 0L && frameTimeNanos > lastFrameNanos) {
+            animElapsedNanos += frameTimeNanos - lastFrameNanos;
+        }
+        lastFrameNanos = frameTimeNanos;
+        //限制帧率时跳过部分vsync，因动画按时间计算，视觉速度不变
+        long interval = minFrameIntervalNanos();
+        if (interval == 0L || frameTimeNanos - lastInvalidateFrameNanos >= interval) {
+            if (lastInvalidateFrameNanos != 0L) {
+                long vsyncs = (frameTimeNanos - lastInvalidateFrameNanos + vsyncNanos / 2) / vsyncNanos;
+                skippedFrames += (int) Math.max(0L, vsyncs - 1);
+            }
+            lastInvalidateFrameNanos = frameTimeNanos;
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * 限制帧率时两次绘制之间的最小间隔，留出10%余量，避免vsync抖动导致多跳一帧
+     *
+     * @return 不限制帧率时为0
+     */
+    private long minFrameIntervalNanos() {
+        return targetFrameRate > 0 ? 1000000000L / targetFrameRate * 9 / 10 : 0L;
+    }
+
+    /**
+     * @return 距下一次需要绘制还有多久，不限制帧率或已经到期时为0，最多一个间隔
+     */
+    long nextFrameDelayNanos(long nowNanos) {
+        long interval = minFrameIntervalNanos();
+        if (interval == 0L || lastInvalidateFrameNanos == 0L) return 0L;
+        long delay = lastInvalidateFrameNanos + interval - nowNanos;
+        return Math.max(0L, Math.min(interval, delay));
+    }
+
+    /**
+     * 测试用：直接设置动画时长，不经过帧回调
+     */
+    void setAnimElapsedNanos(long elapsedNanos) {
+        this.animElapsedNanos = elapsedNanos;
+    }
+
+    /**
+     * 测试用：新的小条改为画到canvas上，缓存位图本身不变。需在缓存建立之后调用，缓存重建时恢复
+     */
+    void setRecorderCanvas(Canvas canvas) {
+        this.recorderCanvas = canvas;
+    }
+
+    void setVsyncNanos(long vsyncNanos) {
+        this.vsyncNanos = vsyncNanos;
+    }
+
+    /**
+     * 从头开始动画
+     */
+    void start() {
+        lineAnimX = 0;
+        isPrepareLineAnimEnd = false;
+        isLayoutDirty = true;
+        isStop = false;
+        animElapsedNanos = 0L;
+        nextBarElapsedNanos = barIntervalMillis * 1000000L;
+        lastFrameNanos = 0L;
+        lastDrawElapsedNanos = 0L;
+        lastInvalidateFrameNanos = 0L;
+    }
+
+    void stop() {
+        isStop = true;
+    }
+
+    //初始化绘制参数
+    private void initDraw(Canvas canvas) {
+        width = canvas.getWidth();
+        height = canvas.getHeight();
+
+        centerHeight = height >> 1;
+
+        //振幅为高度的1/4----------
+        amplitude = height / 4.0f;
+
+        //适合View的理论最大音量值，和音量不属于同一概念
+        perVolume = sensibility * 0.35f;
+
+        //小条均匀铺满宽度，包括起点和终点
+        geometry.layoutSpread(0f, width, littleBarWidth, gapWidth);
+        geometry.setVertical(centerHeight, littleBarMinHeight);
+        //将采样点映射到[-2，2]
+        sineWave.layout(geometry, 0f, width);
+
+        //录音模式的槽位铺满可见宽度再多一个，小条在槽位中居中
+        float pitch = littleBarWidth + gapWidth;
+        recorderSlots = pitch > 0 ? (int) Math.ceil(width / pitch) + 1 : 0;
+        barHistory.resize(recorderSlots);
+        recorderGeometry.layoutPacked(gapWidth / 2, recorderSlots * pitch + pitch / 2, littleBarWidth, gapWidth);
+        recorderGeometry.setVertical(centerHeight, littleBarMinHeight);
+        recorderScale = (height - littleBarMinHeight) / 2f;
+        isRecorderCacheDirty = true;
+        isLayoutDirty = false;
+    }
+
+    void setMoveSpeed(float moveSpeed) {
+        this.offsetSpeed = moveSpeed;
+    }
+
+    /**
+     * 可在任意线程调用
+     */
+    void setVolume(int volume) {
+        this.targetVolume = Math.max(0, Math.min(100, volume));
+    }
+
+    /**
+     * 以下三个方法只在录音线程调用
+     */
+    void offerAmplitudes(short[] pcm, int offset, int length) {
+        producerRing().offer(pcm, offset, length);
+    }
+
+    void offerAmplitudes(float[] pcm, int offset, int length) {
+        producerRing().offer(pcm, offset, length);
+    }
+
+    void offerAmplitude(float amplitude) {
+        producerRing().offer(amplitude);
+    }
+
+    void setRecorderMode(boolean recorderMode) {
+        if (isRecorderMode == recorderMode) return;
+        isRecorderMode = recorderMode;
+        nextBarElapsedNanos = animElapsedNanos + barIntervalMillis * 1000000L;
+        pendingBarLevel = -1f;
+        isLayoutDirty = true;
+    }
+
+    boolean isRecorderMode() {
+        return isRecorderMode;
+    }
+
+    void setBarIntervalMillis(int millis) {
+        this.barIntervalMillis = Math.max(0, millis);
+        nextBarElapsedNanos = animElapsedNanos + barIntervalMillis * 1000000L;
+    }
+
+    int getBarIntervalMillis() {
+        return barIntervalMillis;
+    }
+
+    void pushBar(float level) {
+        barHistory.push(Math.max(0f, Math.min(1f, level)));
+    }
+
+    void clearBars() {
+        barHistory.clear();
+        isRecorderCacheDirty = true;
+    }
+
+    void setBackGroundColor(int backGroundColor) {
+        this.backGroundColor = backGroundColor;
+    }
+
+    int getBackGroundColor() {
+        return backGroundColor;
+    }
+
+    void setLineColor(int lineColor) {
+        paint.setColor(lineColor);
+        linePaint.setColor(lineColor);
+    }
+
+    void setPrecomputedPhaseSteps(int steps) {
+        sineWave.setPhaseSteps(steps);
+    }
+
+    int getPrecomputedPhaseSteps() {
+        return sineWave.getPhaseSteps();
+    }
+
+    void setOnFrameMetricsListener(OnFrameMetricsListener onFrameMetricsListener) {
+        this.onFrameMetricsListener = onFrameMetricsListener;
+    }
+
+    void setBatchedDraw(boolean batchedDraw) {
+        this.isBatchedDraw = batchedDraw;
+    }
+
+    void setUseSineTable(boolean useSineTable) {
+        sineWave.setUseSineTable(useSineTable);
+    }
+
+    void setTargetFrameRate(int fps) {
+        this.targetFrameRate = fps < 0 ? 0 : fps;
+    }
+
+    int getTargetFrameRate() {
+        return targetFrameRate;
+    }
+
+    void setSensibility(int sensibility) {
+        this.sensibility = sensibility;
+        checkSensibilityValue();
+    }
+}
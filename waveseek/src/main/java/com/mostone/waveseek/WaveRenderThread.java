@@ -0,0 +1,225 @@
+package com.mostone.waveseek;
+
+import android.graphics.Canvas;
+import android.graphics.SurfaceTexture;
+import android.os.Build;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.Message;
+import android.os.Process;
+import android.view.Choreographer;
+import android.view.Surface;
+
+import java.util.concurrent.CountDownLatch;
+
+/**
+ * ================================================
+ * 描    述: 独立的渲染线程，在自己的Looper上接收vsync并把{@link WaveRenderer}绘制到Surface
+ * <p>
+ * 绘制和动画计算不占用UI线程，UI线程卡顿时波形仍按自己的帧节奏刷新。
+ * 除绘制内容和Surface外的状态只在渲染线程访问，UI线程通过消息通知，不需要加锁。
+ * 动画停止、暂停或没有Surface时不注册帧回调，不产生后台唤醒
+ * ================================================
+ */
+public final class WaveRenderThread extends HandlerThread implements Handler.Callback, Choreographer.FrameCallback {
+
+    private static final int MSG_SURFACE = 1;
+    private static final int MSG_SIZE = 2;
+    private static final int MSG_RENDER = 3;
+    private static final int MSG_PAUSE = 4;
+    private static final int MSG_RELEASE = 5;
+
+    private final WaveRenderer renderer;
+    //start之后由调用start的线程创建
+    private Handler handler;
+
+    //以下只在渲染线程访问
+    private Choreographer choreographer;
+    private Surface surface;
+    private boolean isFrameCallbackPosted = false;
+    private boolean isDirty = false;
+    private boolean isPaused = false;
+
+    public WaveRenderThread(WaveRenderer renderer) {
+        super("WaveRenderThread", Process.THREAD_PRIORITY_DISPLAY);
+        this.renderer = renderer;
+    }
+
+    @Override
+    public synchronized void start() {
+        super.start();
+        handler = new Handler(getLooper(), this);
+    }
+
+    @Override
+    protected void onLooperPrepared() {
+        //Choreographer按线程区分，必须在渲染线程获取
+        choreographer = Choreographer.getInstance();
+    }
+
+    /**
+     * 开始向新的Surface绘制，需在start之后调用
+     */
+    public void setSurface(SurfaceTexture surfaceTexture, int width, int height) {
+        handler.obtainMessage(MSG_SURFACE, width, height, surfaceTexture).sendToTarget();
+    }
+
+    public void setSize(int width, int height) {
+        handler.obtainMessage(MSG_SIZE, width, height).sendToTarget();
+    }
+
+    /**
+     * 暂停时不接收帧回调，恢复后重新绘制一帧
+     */
+    public void setPaused(boolean paused) {
+        handler.obtainMessage(MSG_PAUSE, paused ? 1 : 0, 0).sendToTarget();
+    }
+
+    /**
+     * 在渲染线程执行event，之后绘制一帧。绘制内容的状态只应通过这里修改
+     */
+    public void queueEvent(Runnable event) {
+        handler.post(event);
+        requestRender();
+    }
+
+    /**
+     * 请求在下一个vsync绘制一帧，动画停止时也会绘制
+     */
+    public void requestRender() {
+        handler.sendEmptyMessage(MSG_RENDER);
+    }
+
+    /**
+     * 停止使用当前的Surface，等待渲染线程释放后返回，
+     * 之后SurfaceTexture可以安全销毁
+     */
+    public void releaseSurface() {
+        if (!isAlive()) return;
+        CountDownLatch released = new CountDownLatch(1);
+        if (!handler.sendMessage(handler.obtainMessage(MSG_RELEASE, released))) return;
+        awaitUninterruptibly(released);
+    }
+
+    /**
+     * 释放Surface并结束线程，已发出的消息会先处理完
+     */
+    public void quitAndJoin() {
+        releaseSurface();
+        quitSafely();
+        boolean interrupted = false;
+        while (true) {
+            try {
+                join();
+                break;
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) Thread.currentThread().interrupt();
+    }
+
+    private static void awaitUninterruptibly(CountDownLatch latch) {
+        boolean interrupted = false;
+        while (true) {
+            try {
+                latch.await();
+                break;
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) Thread.currentThread().interrupt();
+    }
+
+    @Override
+    public boolean handleMessage(Message msg) {
+        switch (msg.what) {
+            case MSG_SURFACE:
+                releaseSurfaceInternal();
+                surface = new Surface((SurfaceTexture) msg.obj);
+                renderer.onSurfaceChanged(msg.arg1, msg.arg2);
+                isDirty = true;
+                break;
+            case MSG_SIZE:
+                renderer.onSurfaceChanged(msg.arg1, msg.arg2);
+                isDirty = true;
+                break;
+            case MSG_RENDER:
+                isDirty = true;
+                break;
+            case MSG_PAUSE:
+                boolean paused = msg.arg1 != 0;
+                if (isPaused == paused) return true;
+                isPaused = paused;
+                isDirty = true;
+                break;
+            case MSG_RELEASE:
+                releaseSurfaceInternal();
+                ((CountDownLatch) msg.obj).countDown();
+                return true;
+            default:
+                return false;
+        }
+        updateFrameLoop();
+        return true;
+    }
+
+    @Override
+    public void doFrame(long frameTimeNanos) {
+        isFrameCallbackPosted = false;
+        if (surface == null || isPaused) return;
+        //先推进动画，保证跳过的帧也计入时间
+        boolean shouldDraw = renderer.onFrame(frameTimeNanos);
+        if (shouldDraw || isDirty) {
+            isDirty = false;
+            drawFrame();
+        }
+        updateFrameLoop();
+    }
+
+    private void drawFrame() {
+        Canvas canvas;
+        try {
+            //API 23起可以直接向Surface录制硬件绘制命令
+            canvas = Build.VERSION.SDK_INT >= Build.VERSION_CODES.M
+                    ? surface.lockHardwareCanvas()
+                    : surface.lockCanvas(null);
+        } catch (IllegalArgumentException | IllegalStateException | Surface.OutOfResourcesException e) {
+            //Surface已失效，等待releaseSurface
+            return;
+        }
+        boolean traced = WaveTrace.begin("WaveRenderThread#draw");
+        try {
+            renderer.onDraw(canvas);
+        } finally {
+            surface.unlockCanvasAndPost(canvas);
+            WaveTrace.end(traced);
+        }
+    }
+
+    private void updateFrameLoop() {
+        boolean shouldRun = surface != null && !isPaused && (isDirty || renderer.isAnimating());
+        if (shouldRun) {
+            if (!isFrameCallbackPosted) {
+                isFrameCallbackPosted = true;
+                choreographer.postFrameCallback(this);
+            }
+        } else if (isFrameCallbackPosted) {
+            choreographer.removeFrameCallback(this);
+            isFrameCallbackPosted = false;
+            renderer.onPause();
+        }
+    }
+
+    private void releaseSurfaceInternal() {
+        if (surface == null) return;
+        if (isFrameCallbackPosted) {
+            choreographer.removeFrameCallback(this);
+            isFrameCallbackPosted = false;
+        }
+        renderer.onPause();
+        surface.release();
+        surface = null;
+    }
+}
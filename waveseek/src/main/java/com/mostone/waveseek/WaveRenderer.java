@@ -0,0 +1,41 @@
+package com.mostone.waveseek;
+
+import android.graphics.Canvas;
+
+/**
+ * ================================================
+ * 描    述: 由{@link WaveRenderThread}驱动的绘制内容，所有方法都在渲染线程调用
+ * <p>
+ * 与具体的Surface无关，可以直接用软件Canvas驱动
+ * ================================================
+ */
+public interface WaveRenderer {
+
+    /**
+     * Surface创建或尺寸改变
+     */
+    void onSurfaceChanged(int width, int height);
+
+    /**
+     * 按vsync时间推进动画
+     *
+     * @param frameTimeNanos 与System.nanoTime同一时基
+     * @return 本帧是否需要绘制
+     */
+    boolean onFrame(long frameTimeNanos);
+
+    /**
+     * 绘制一帧，画布没有经过清除，需要自己覆盖全部内容
+     */
+    void onDraw(Canvas canvas);
+
+    /**
+     * @return 是否需要继续接收帧回调
+     */
+    boolean isAnimating();
+
+    /**
+     * 帧回调中断，例如View不可见或Surface被销毁，下一次{@link #onFrame}不应把中断的时间计入动画
+     */
+    void onPause();
+}
@@ -0,0 +1,966 @@
+package com.mostone.waveseek;
+
+import android.content.Context;
+import android.content.res.TypedArray;
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.LinearGradient;
+import android.graphics.Paint;
+import android.graphics.Path;
+import android.graphics.PorterDuff;
+import android.graphics.RectF;
+import android.graphics.Shader;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.AttributeSet;
+import android.util.TypedValue;
+import android.view.Choreographer;
+import android.view.GestureDetector;
+import android.view.MotionEvent;
+import android.view.ScaleGestureDetector;
+import android.view.View;
+
+import com.mostone.waveseek.core.BarGeometry;
+import com.mostone.waveseek.core.PeakCodec;
+import com.mostone.waveseek.core.PeakPipeline;
+import com.mostone.waveseek.core.PeakPyramid;
+import com.mostone.waveseek.core.Peaks;
+import com.mostone.waveseek.core.ProgressMailbox;
+import com.mostone.waveseek.core.WaveTables;
+import com.mostone.waveseek.widget.R;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * ================================================
+ * 作    者：JayGoo
+ * 版    本：1.0.0
+ * 创建日期：2017/7/21
+ * 描    述: 绘制波浪曲线
+ * ================================================
+ */
+public class WaveSeekBar extends View {
+    private static final String TAG = "WaveLineView";
+
+    private final int DEFAULT_SAMPLING_SIZE = 8;
+    private final float DEFAULT_OFFSET_SPEED = 666F;
+    private final int DEFAULT_SENSIBILITY = 5;
+    private final float DEFAULT_MAX_ZOOM = 64F;
+    //尚未加载部分的占位小条的透明度
+    private final int PLACEHOLDER_ALPHA = 0x40;
+
+    //控制向右偏移速度，越小偏移速度越快
+    private float offsetSpeed;
+
+    //用户设置的音量，[0,100]
+    private int targetVolume = 50;
+
+
+    //灵敏度，越大越灵敏[1,10]
+    private int sensibility;
+
+
+
+    //波浪线颜色
+    private int lineColor;
+    //进度颜色
+    private int progressColor;
+    //游标线颜色
+    private int cursorColor;
+    //粗线宽度
+    private int thickLineWidth;
+    //细线宽度
+    private int fineLineWidth;
+
+    private final Paint paint = new Paint();
+
+    {
+        //防抖动
+        paint.setDither(true);
+        //抗锯齿，降低分辨率，提高绘制效率
+        paint.setAntiAlias(true);
+    }
+
+    private List<Path> paths = new ArrayList<>();
+
+    {
+        for (int i = 0; i < 4; i++) {
+            paths.add(new Path());
+        }
+    }
+
+    //不同函数曲线系数
+    private float[] pathFuncs = {
+            1.4f, 0.35f, 0.1f, -0.1f
+    };
+
+    //小条几何数据
+    private final BarGeometry geometry = new BarGeometry();
+    //每个小条归一化后的高度，乘以levelScale得到小条半高
+    private float[] barLevels = new float[0];
+    private float levelScale;
+    //音频的波形数据，为null时按fixMapX的样式绘制
+    private PeakPyramid pyramid;
+    //布局是否需要重新计算
+    private boolean isLayoutDirty = true;
+    //数据是否仍在逐段加载，pyramid只有前loadedBuckets个桶有效
+    private boolean isLoadingPeaks = false;
+    private int loadedBuckets;
+    //正在加载的数据，其他对象即使桶数相同也是新的波形
+    private Peaks loadingPeaks;
+    //可见小条中前loadedBars个已加载，其余绘制为占位小条
+    private int loadedBars;
+    //缩放倍数，全部小条铺满zoom倍的可见宽度，[1,maxZoom]
+    private float zoom = 1f;
+    private float maxZoom;
+    //可见区域起点占全长的比例，[0,1-1/zoom]
+    private double viewStart = 0d;
+    private boolean isZoomEnabled;
+    private ScaleGestureDetector scaleDetector;
+    private GestureDetector panDetector;
+    //双指缩放时上一次的焦点x坐标，不含左侧padding
+    private float lastFocusX;
+    private float[] fixMapX = {
+            0.05f,
+            0.10f,0.10f,
+            0.05f,0.05f,
+            0.10f,
+            0.15f,0.15f,
+            0.20f,0.25f,0.20f,
+            0.15f,0.15f,
+            0.10f,
+            0.05f,0.05f,
+            0.10f,
+            0.15f,
+            0.10f,
+            0.05f,0.05f,
+            0.10f,0.15f,0.20f,0.15f,0.10f,0.05f};
+    //画布宽高
+    private int width, height;
+    //画布中心的高度
+    private int centerHeight;
+    //振幅
+    private float amplitude;
+    //连线动画结束标记
+    private boolean isPrepareLineAnimEnd = false;
+    //连线动画位移
+    private int lineAnimX = 0;
+    //渐入动画结束标记
+    private boolean isPrepareAlphaAnimEnd = false;
+    //渐入动画百分比值[0,1f]
+    private float prepareAlpha = 0f;
+    //是否开启准备动画
+    private boolean isOpenPrepareAnim = false;
+
+
+    //逐个绘制小条时复用的矩形
+    private final RectF barRect = new RectF();
+    //小条宽度
+    private float littleBarWidth;
+    //小条最小高度
+    private float littleBarMinHeight;
+    //小条间隙宽度
+    private float gapWidth;
+
+    //当前播放位置和总时长，单位由调用方决定(如毫秒)，只在UI线程读写
+    private long mPosition = 0;
+    private long mDuration = 100;
+    //最近一次请求重绘时游标所在的x坐标，用于过滤不足一个像素的进度变化
+    private float invalidatedProgressX = -1f;
+
+    //其他线程发布的进度，每帧最多应用一次
+    private final ProgressMailbox progressMailbox = new ProgressMailbox();
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private final Choreographer.FrameCallback applyProgressCallback = new Choreographer.FrameCallback() {
+        @Override
+        public void doFrame(long frameTimeNanos) {
+            applyPendingProgress();
+        }
+    };
+    private final Runnable scheduleApplyProgress = new Runnable() {
+        @Override
+        public void run() {
+            Choreographer.getInstance().postFrameCallback(applyProgressCallback);
+        }
+    };
+
+    private OnFrameMetricsListener onFrameMetricsListener;
+    //批量绘制小条的画笔，线宽为小条宽度，圆头
+    private final Paint linePaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+    //占位小条的画笔，与linePaint和paint相同但半透明
+    private final Paint placeholderLinePaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+    private final Paint placeholderPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+    //是否一次drawLines批量绘制所有小条，false时逐个drawRoundRect
+    private boolean isBatchedDraw = true;
+
+    //小条缓存图层
+    private Bitmap barCache;
+    private Canvas barCacheCanvas;
+    //缓存是否需要重建
+    private boolean isBarCacheDirty = true;
+
+    private Paint percentPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+    private Paint cursorPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+
+    //游标区域，以游标左上角为原点，绘制时平移画布
+    private final RectF cursorRectF = new RectF();
+    //按下时游标的可触摸区域
+    private final RectF cursorTouchRectF = new RectF();
+    //游标渐变缓存，仅在游标尺寸或颜色变化时重建
+    private LinearGradient cursorShader;
+    private float cursorShaderWidth;
+    private float cursorShaderHeight;
+    private int cursorShaderColor;
+
+    public WaveSeekBar(Context context) {
+        this(context, null);
+    }
+
+    public WaveSeekBar(Context context, AttributeSet attrs) {
+        this(context, attrs, 0);
+    }
+
+    public WaveSeekBar(Context context, AttributeSet attrs, int defStyleAttr) {
+        super(context, attrs, defStyleAttr);
+        initAttr(attrs);
+    }
+    private float cursorPadding;
+    private float cursorWidth;
+
+    private void initAttr(AttributeSet attrs) {
+        TypedArray t = getContext().obtainStyledAttributes(attrs, R.styleable.WaveSeekBar);
+        lineColor = t.getColor(R.styleable.WaveSeekBar_wsbLineColor, Color.parseColor("#2ED184"));
+        progressColor = t.getColor(R.styleable.WaveSeekBar_wsbProgressColor, Color.BLACK);
+        cursorColor = t.getColor(R.styleable.WaveSeekBar_wsbCursorColor, Color.BLACK);
+        offsetSpeed = DEFAULT_OFFSET_SPEED;
+        sensibility = DEFAULT_SENSIBILITY;
+        littleBarWidth = t.getDimension(R.styleable.WaveSeekBar_wsbLitterBarWidth, 5f);
+        littleBarMinHeight = t.getDimension(R.styleable.WaveSeekBar_wsbLitterBarMinHeight, 5f);
+        gapWidth = t.getDimension(R.styleable.WaveSeekBar_wsbGapWidth, 5f);
+        isZoomEnabled = t.getBoolean(R.styleable.WaveSeekBar_wsbZoomEnabled, true);
+        maxZoom = Math.max(1f, t.getFloat(R.styleable.WaveSeekBar_wsbMaxZoom, DEFAULT_MAX_ZOOM));
+
+        cursorPadding = TypedValue.applyDimension(TypedValue.COMPLEX_UNIT_DIP,20, getContext().getResources().getDisplayMetrics());
+        cursorWidth = TypedValue.applyDimension(TypedValue.COMPLEX_UNIT_DIP,1, getContext().getResources().getDisplayMetrics());
+
+        t.recycle();
+        checkVolumeValue();
+        checkSensibilityValue();
+        paint.setStyle(Paint.Style.FILL);
+        paint.setColor(lineColor);
+        percentPaint.setStyle(Paint.Style.FILL);
+        percentPaint.setColor(progressColor);
+        linePaint.setStyle(Paint.Style.STROKE);
+        linePaint.setStrokeCap(Paint.Cap.ROUND);
+        linePaint.setStrokeWidth(littleBarWidth);
+        placeholderLinePaint.set(linePaint);
+        placeholderLinePaint.setAlpha(PLACEHOLDER_ALPHA);
+        placeholderPaint.setStyle(Paint.Style.FILL);
+        placeholderPaint.setAlpha(PLACEHOLDER_ALPHA);
+
+        scaleDetector = new ScaleGestureDetector(getContext(), scaleListener);
+        panDetector = new GestureDetector(getContext(), panListener);
+
+    }
+
+
+    /**
+     * 百分比进度，[0,100]
+     */
+    public void setProgress(int mPercent) {
+        setProgress(mPercent, 100);
+    }
+
+    /**
+     * 以播放位置和总时长设置进度，长音频也能精确到像素
+     * <p>
+     * 可在任意线程以任意频率调用，只有最新的值会在下一帧被应用，且不会回调{@link onProgressListener}。
+     * 游标移动不足一个像素时不会重绘，否则只重绘新旧游标之间的区域
+     *
+     * @param position 当前位置
+     * @param duration 总时长
+     */
+    public void setProgress(long position, long duration) {
+        if (duration <= 0) return;
+        if (position < 0) position = 0;
+        else if (position > duration) position = duration;
+        if (progressMailbox.offer(position, duration)) {
+            //Choreographer是线程相关的，需要回到主线程注册帧回调
+            if (Looper.myLooper() == Looper.getMainLooper()) {
+                scheduleApplyProgress.run();
+            } else {
+                mainHandler.post(scheduleApplyProgress);
+            }
+        }
+    }
+
+    private void applyPendingProgress() {
+        long position = progressMailbox.poll();
+        //拖动游标时以用户操作为准
+        if (position == ProgressMailbox.NONE || isPressedCursor) return;
+        long duration = progressMailbox.duration();
+        //位置总在[0,duration]内，getProgress和游标不会越界
+        this.mPosition = Math.max(0, Math.min(position, duration));
+        this.mDuration = duration;
+        invalidateProgress();
+    }
+
+    /**
+     * 只能在UI线程调用
+     */
+    public long getPosition() {
+        return mPosition;
+    }
+
+    public long getDuration() {
+        return mDuration;
+    }
+
+    /**
+     * @return 百分比进度，[0,100]
+     */
+    public int getProgress() {
+        return (int) (mPosition * 100 / mDuration);
+    }
+
+    //进度对应的游标x坐标，不含左侧padding，放大后可能在可见区域之外
+    private float progressX() {
+        return (float) (((double) mPosition / mDuration - viewStart) * contentWidth());
+    }
+
+    //全部小条铺满的宽度
+    private float contentWidth() {
+        return (getWidth() - getPaddingStart() - getPaddingEnd()) * zoom;
+    }
+
+    /**
+     * 游标变化不足一个像素时不重绘。软件绘制时只重绘新旧游标之间的水平带状区域；
+     * 硬件加速下脏区域不起作用，每次重绘只合成小条缓存，直接整体重绘
+     */
+    @SuppressWarnings("deprecation")
+    private void invalidateProgress() {
+        if (getWidth() <= 0) return;
+        float newX = progressX();
+        float oldX = invalidatedProgressX;
+        if (oldX >= 0 && Math.abs(newX - oldX) < 1f) return;
+        invalidatedProgressX = newX;
+        if (oldX < 0 || (isHardwareAccelerated() && getLayerType() != LAYER_TYPE_SOFTWARE)) {
+            invalidate();
+            return;
+        }
+        //游标贴近左边界时会被推到[0,cursorWidth]，这里按游标宽度向两侧外扩
+        float margin = cursorWidth + 1;
+        int left = (int) (Math.min(oldX, newX) - margin) + getPaddingStart();
+        int right = (int) Math.ceil(Math.max(oldX, newX) + margin) + getPaddingStart();
+        left = Math.max(left, 0);
+        right = Math.min(right, getWidth());
+        //放大后新旧游标都可能在可见区域之外
+        if (left < right) invalidate(left, 0, right, getHeight());
+    }
+
+    @Override
+    protected void onSizeChanged(int w, int h, int oldw, int oldh) {
+        super.onSizeChanged(w, h, oldw, oldh);
+        //尺寸变化后重新计算小条布局并重建缓存
+        isLayoutDirty = true;
+        invalidatedProgressX = -1f;
+        invalidateBarCache();
+    }
+
+    @Override
+    protected void onDetachedFromWindow() {
+        super.onDetachedFromWindow();
+        mainHandler.removeCallbacks(scheduleApplyProgress);
+        Choreographer.getInstance().removeFrameCallback(applyProgressCallback);
+        //丢弃的待处理进度直接应用，避免重新attach后丢失
+        applyPendingProgress();
+        releaseBarCache();
+    }
+
+    @Override
+    protected void onDraw(Canvas canvas) {
+        super.onDraw(canvas);
+        long drawStart = onFrameMetricsListener != null ? System.nanoTime() : 0L;
+
+        if (isLayoutDirty) {
+            initDraw(canvas);
+        }
+
+        if (lineAnim(canvas)/*暂时都会是true*/) {
+
+            boolean cacheHit = barCache != null && !isBarCacheDirty;
+            if (!ensureBarCache()) return;
+
+            boolean traced = WaveTrace.begin("WaveSeekBar#draw");
+
+            //已播放和未播放部分分两次裁剪绘制，不再使用离屏图层+SRC_IN混合
+            //小条缓存为ALPHA_8位图，绘制时由画笔颜色着色
+            float progressX = progressX();
+            invalidatedProgressX = progressX;
+            float splitX = progressX + getPaddingStart();
+
+            int count = canvas.save();
+            canvas.clipRect(getPaddingStart(), 0f, splitX, getHeight());
+            canvas.drawBitmap(barCache, 0f, 0f, percentPaint);
+            canvas.restoreToCount(count);
+
+            count = canvas.save();
+            canvas.clipRect(splitX, 0f, getWidth(), getHeight());
+            canvas.drawBitmap(barCache, 0f, 0f, paint);
+            canvas.restoreToCount(count);
+
+            //放大后游标可能不在可见区域内
+            boolean isCursorVisible = progressX > -cursorWidth && progressX < getWidth() - getPaddingStart();
+            if ((isShowCursor || isPressedCursor) && isCursorVisible){
+                float cursorLeft = (((progressX - cursorWidth/2) < 0) ? 0 :progressX - cursorWidth/2) + getPaddingStart();
+                ensureCursorShader();
+                count = canvas.save();
+                canvas.translate(cursorLeft, 0f);
+                canvas.drawRect(cursorRectF,cursorPaint);
+                canvas.restoreToCount(count);
+            }
+            WaveTrace.end(traced);
+
+            if (onFrameMetricsListener != null) {
+                //按需重绘，没有连续的帧节奏，跳过的帧数固定为0
+                onFrameMetricsListener.onFrameMetrics(this, System.nanoTime() - drawStart,
+                        geometry.barCount(), 0, cacheHit ? 1 : 0, cacheHit ? 0 : 1);
+            }
+
+        }
+
+
+    }
+
+    /**
+     * 小条的形状只和尺寸、小条宽度/间隙以及数据有关，绘制一次后缓存为位图，
+     * 进度变化时只需要合成缓存，不再逐条计算和绘制
+     *
+     * @return 缓存是否可用
+     */
+    private boolean ensureBarCache() {
+        int w = getWidth();
+        int h = getHeight();
+        if (w <= 0 || h <= 0) return false;
+        if (barCache != null && !isBarCacheDirty) return true;
+
+        if (barCache == null || barCache.getWidth() != w || barCache.getHeight() != h) {
+            releaseBarCache();
+            barCache = Bitmap.createBitmap(w, h, Bitmap.Config.ALPHA_8);
+            barCacheCanvas = new Canvas(barCache);
+        } else {
+            barCache.eraseColor(Color.TRANSPARENT);
+        }
+
+        boolean traced = WaveTrace.begin("WaveSeekBar#buildBarCache");
+        geometry.setBars(barLevels, levelScale);
+        //放大后两端的小条可能只有一部分可见
+        int count = barCacheCanvas.save();
+        barCacheCanvas.clipRect(getPaddingStart(), 0, w - getPaddingEnd(), h);
+        drawBars(barCacheCanvas, 0, loadedBars, linePaint, paint);
+        drawBars(barCacheCanvas, loadedBars, geometry.barCount(), placeholderLinePaint, placeholderPaint);
+        barCacheCanvas.restoreToCount(count);
+        WaveTrace.end(traced);
+        isBarCacheDirty = false;
+        return true;
+    }
+
+    private void invalidateBarCache() {
+        isBarCacheDirty = true;
+        invalidate();
+    }
+
+    private void releaseBarCache() {
+        if (barCache != null) {
+            barCache.recycle();
+            barCache = null;
+            barCacheCanvas = null;
+        }
+        isBarCacheDirty = true;
+    }
+
+    /**
+     * 绘制[from, to)范围内的小条，缓存为ALPHA_8，只有透明度有效，颜色在合成时由画笔决定
+     */
+    private void drawBars(Canvas canvas, int from, int to, Paint strokePaint, Paint barPaint) {
+        if (to <= from) return;
+        if (isBatchedDraw) {
+            canvas.drawLines(geometry.lines(), from * BarGeometry.STRIDE, (to - from) * BarGeometry.STRIDE,
+                    strokePaint);
+        } else {
+            float[] rects = geometry.rects();
+            for (int j = from * BarGeometry.STRIDE; j < to * BarGeometry.STRIDE; j += BarGeometry.STRIDE) {
+                barRect.set(rects[j], rects[j + 1], rects[j + 2], rects[j + 3]);
+                canvas.drawRoundRect(barRect, littleBarWidth, littleBarWidth, barPaint);
+            }
+        }
+    }
+
+    /**
+     * 游标渐变只依赖游标宽高和颜色，位置通过平移画布实现，避免每帧重建Shader
+     */
+    private void ensureCursorShader() {
+        float h = getHeight();
+        if (cursorShader != null && cursorShaderWidth == cursorWidth
+                && cursorShaderHeight == h && cursorShaderColor == cursorColor) {
+            return;
+        }
+        cursorShaderWidth = cursorWidth;
+        cursorShaderHeight = h;
+        cursorShaderColor = cursorColor;
+        cursorRectF.set(0f, 0f, cursorWidth, h);
+        cursorShader = new LinearGradient(0f, 0f, cursorWidth, h,
+                new int[]{Color.TRANSPARENT, cursorColor, Color.TRANSPARENT}, null, Shader.TileMode.CLAMP);
+        cursorPaint.setShader(cursorShader);
+    }
+
+    private float downX;
+    private float downY;
+
+    private boolean isShowCursor = false;
+    private boolean isPressedCursor = false;
+
+    public boolean isShowCursor() {
+        return isShowCursor;
+    }
+
+    public void setShowCursor(boolean showCursor) {
+        isShowCursor = showCursor;
+    }
+
+  // <editor-fold defaultstate="collapsed" desc="点击事件">
+
+
+    @Override
+    public boolean onTouchEvent(MotionEvent event) {
+        if (isZoomEnabled) {
+            scaleDetector.onTouchEvent(event);
+            //拖动游标时不平移
+            if (!isPressedCursor) panDetector.onTouchEvent(event);
+        }
+        if (event.getAction() == MotionEvent.ACTION_DOWN){
+            downX = event.getX();
+            downY = event.getY();
+            float cursorCenter= progressX();
+            float cursorLeft = cursorCenter - cursorPadding + getPaddingStart();
+            float cursorRight = cursorCenter + cursorPadding + getPaddingStart();
+            cursorTouchRectF.set(cursorLeft,0,cursorRight,getHeight());
+            if (cursorTouchRectF.contains(downX,downY)){
+                isPressedCursor = true;
+            }
+            return true;
+        }else if (event.getAction() == MotionEvent.ACTION_MOVE){
+            if (isPressedCursor && !scaleDetector.isInProgress()){
+                float moveX = event.getX();
+                float fraction = (float) (viewStart + (moveX - getPaddingStart()) / contentWidth());
+                if (fraction >= 1) mPosition = mDuration;
+                else if (fraction <= 0) mPosition = 0;
+                else mPosition = (long) (fraction * mDuration);
+                if (onProgressListener!=null){
+                    onProgressListener.onProgress(getProgress());
+                }
+                invalidateProgress();
+                return true;
+            }
+        }else if (event.getAction() == MotionEvent.ACTION_UP|| event.getAction() == MotionEvent.ACTION_CANCEL){
+            if (isPressedCursor){
+                isPressedCursor = false;
+                postInvalidate();
+                return true;
+            }
+        }
+        return super.onTouchEvent(event);
+    }
+
+
+
+    private final ScaleGestureDetector.OnScaleGestureListener scaleListener =
+            new ScaleGestureDetector.SimpleOnScaleGestureListener() {
+        @Override
+        public boolean onScaleBegin(ScaleGestureDetector detector) {
+            lastFocusX = detector.getFocusX() - getPaddingStart();
+            requestDisallowInterceptTouchEvent();
+            return true;
+        }
+
+        @Override
+        public boolean onScale(ScaleGestureDetector detector) {
+            float contentWidth = contentWidth();
+            if (contentWidth <= 0) return false;
+            //上一次焦点处的内容缩放后仍在焦点下，焦点移动时同时平移
+            double anchor = viewStart + lastFocusX / contentWidth;
+            float newZoom = clampZoom(zoom * detector.getScaleFactor());
+            float focusX = detector.getFocusX() - getPaddingStart();
+            lastFocusX = focusX;
+            setViewport(newZoom, anchor - focusX / (contentWidth / zoom * newZoom));
+            return true;
+        }
+    };
+
+    private final GestureDetector.OnGestureListener panListener = new GestureDetector.SimpleOnGestureListener() {
+        @Override
+        public boolean onScroll(MotionEvent e1, MotionEvent e2, float distanceX, float distanceY) {
+            float contentWidth = contentWidth();
+            if (zoom <= 1f || contentWidth <= 0 || scaleDetector.isInProgress()) return false;
+            requestDisallowInterceptTouchEvent();
+            setViewport(zoom, viewStart + distanceX / contentWidth);
+            return true;
+        }
+    };
+
+    private void requestDisallowInterceptTouchEvent() {
+        if (getParent() != null) getParent().requestDisallowInterceptTouchEvent(true);
+    }
+
+  // </editor-fold>
+
+    private onProgressListener onProgressListener;
+
+    public void setOnProgressListener(WaveSeekBar.onProgressListener onProgressListener) {
+        this.onProgressListener = onProgressListener;
+    }
+
+    public interface onProgressListener{
+
+        void onProgress(int progress);
+
+    }
+
+
+// <editor-fold defaultstate="collapsed" desc="绘制的">
+
+    //检查音量是否合法
+    private void checkVolumeValue() {
+        if (targetVolume > 100) targetVolume = 100;
+    }
+
+    //检查灵敏度值是否合法
+    private void checkSensibilityValue() {
+        if (sensibility > 10) sensibility = 10;
+        if (sensibility < 1) sensibility = 1;
+    }
+
+
+
+    /**
+     * 连线动画
+     *
+     * @param canvas
+     * @return whether animation is end
+     */
+    private boolean lineAnim(Canvas canvas) {
+
+        if (isPrepareLineAnimEnd || !isOpenPrepareAnim) return true;
+        lineAnimX += width / 60;
+        if (lineAnimX > width / 2) {
+            isPrepareLineAnimEnd = true;
+
+            return true;
+        }
+
+        return false;
+    }
+
+
+
+
+    private long startAt = 0L;
+    private boolean isStop = true;
+
+
+
+    //初始化绘制参数
+    private void initDraw(Canvas canvas) {
+        width = getWidth() - getPaddingStart() - getPaddingEnd();
+        height = getHeight();
+
+        centerHeight = height >> 1;
+
+        //振幅为高度的1/4----------
+        amplitude = height/2f / 4f;
+
+        //只布局可见区域内的小条，数量与缩放倍数和音频长度无关
+        float contentWidth = width * zoom;
+        geometry.layoutVisible(getPaddingStart(), width, contentWidth, (float) (viewStart * contentWidth),
+                littleBarWidth, gapWidth);
+        geometry.setVertical(centerHeight, littleBarMinHeight);
+
+        int barCount = geometry.barCount();
+        int firstBar = geometry.firstBar();
+        //平移时可见小条数量相差一个，只在不够时扩容
+        if (barLevels.length < barCount) {
+            barLevels = new float[barCount];
+        }
+        if (pyramid != null) {
+            //从金字塔中取最接近小条数量的一层，尺寸变化时不需要重新读取音频，满幅时小条占满高度
+            queryVisibleLevels();
+            levelScale = (height - littleBarMinHeight) / 2f;
+        } else {
+            //小条高度按fixMapX的样式循环，固定取初始相位，平移时样式跟随小条移动
+            for (int i = 0; i < barCount; i++) {
+                barLevels[i] = WaveTables.wave(fixMapX[(firstBar + i) % fixMapX.length], 0f) * pathFuncs[0];
+            }
+            levelScale = amplitude;
+            loadedBars = barCount;
+        }
+        isLayoutDirty = false;
+    }
+
+    /**
+     * 从金字塔中查询可见小条的高度，并计算其中已加载的数量，尚未加载的小条高度为0
+     */
+    private void queryVisibleLevels() {
+        int barCount = geometry.barCount();
+        int firstBar = geometry.firstBar();
+        int totalBars = geometry.totalBars();
+        pyramid.peaks((double) firstBar / totalBars, (double) (firstBar + barCount) / totalBars,
+                barLevels, barCount);
+        if (!isLoadingPeaks) {
+            loadedBars = barCount;
+            return;
+        }
+        //只有覆盖的桶全部加载的小条才算已加载
+        long knownBars = (long) loadedBuckets * totalBars / pyramid.baseSize();
+        loadedBars = (int) Math.max(0, Math.min(barCount, knownBars - firstBar));
+        for (int i = loadedBars; i < barCount; i++) {
+            barLevels[i] = 0f;
+        }
+    }
+
+    /**
+     * 逐段加载时只把新加载的小条重绘到缓存中，View的重绘只是合成缓存
+     */
+    private void onPeaksLoaded() {
+        if (isLayoutDirty || isBarCacheDirty || barCache == null) {
+            //还没有可用的布局和缓存，下一帧整体重建
+            invalidateBarCache();
+            return;
+        }
+        int oldLoadedBars = loadedBars;
+        queryVisibleLevels();
+        if (loadedBars == oldLoadedBars) return;
+        //金字塔上层的桶可能跨越加载边界，边界前的一个小条一起重绘
+        int from = Math.max(0, Math.min(oldLoadedBars, loadedBars) - 1);
+        int to = Math.max(oldLoadedBars, loadedBars);
+        geometry.setBars(barLevels, levelScale);
+
+        float half = gapWidth / 2;
+        float left = Math.max(getPaddingStart(), geometry.left(from) - half);
+        float right = Math.min(getWidth() - getPaddingEnd(), geometry.left(to - 1) + geometry.barWidth() + half);
+        int count = barCacheCanvas.save();
+        barCacheCanvas.clipRect(left, 0, right, getHeight());
+        barCacheCanvas.drawColor(Color.TRANSPARENT, PorterDuff.Mode.CLEAR);
+        drawBars(barCacheCanvas, from, loadedBars, linePaint, paint);
+        drawBars(barCacheCanvas, Math.max(from, loadedBars), to, placeholderLinePaint, placeholderPaint);
+        barCacheCanvas.restoreToCount(count);
+        invalidate();
+    }
+
+
+
+    /**
+     * 显示音频真实的波形，例如{@link WaveformLoader}的结果。
+     * 桶的数量不限，几千个桶在放大后仍有细节，参见{@link #getBarCount()}。null恢复默认的装饰波形
+     */
+    public void setPeaks(Peaks peaks) {
+        setPeakPyramid(peaks != null ? PeakPyramid.build(peaks) : null);
+    }
+
+    /**
+     * 归一化到[0,1]的小条高度，按小条数量重新采样。null恢复默认的装饰波形
+     */
+    public void setLevels(float[] levels) {
+        setPeakPyramid(levels != null ? PeakPyramid.fromLevels(levels) : null);
+    }
+
+    /**
+     * {@link PeakCodec}编码的小条高度，例如随语音消息的元数据下发。
+     * 从当前位置直接解码到View的金字塔中，不读取音频。null恢复默认的装饰波形
+     */
+    public void setEncodedLevels(ByteBuffer encoded) {
+        setPeakPyramid(encoded != null ? PeakPyramid.decode(encoded) : null);
+    }
+
+    /**
+     * 显示预先建好的金字塔，View尺寸改变时只查找最接近的层级。null恢复默认的装饰波形
+     */
+    public void setPeakPyramid(PeakPyramid pyramid) {
+        this.pyramid = pyramid;
+        isLoadingPeaks = false;
+        loadingPeaks = null;
+        isLayoutDirty = true;
+        invalidateBarCache();
+    }
+
+    /**
+     * 显示仍在加载的波形，例如文件下载或解码时由{@link PeakPipeline.Listener}回调。
+     * 显示[0, completedBuckets)的桶，其余显示为占位小条，只重绘新填充的小条。传入另一个Peaks实例时开始新的波形
+     *
+     * @param peaks            波形的全部桶，只读取已完成的前缀
+     * @param completedBuckets 开头已确定的桶数量
+     */
+    public void updatePeaks(Peaks peaks, int completedBuckets) {
+        completedBuckets = Math.max(0, Math.min(peaks.size(), completedBuckets));
+        boolean isNewWaveform = !isLoadingPeaks || peaks != loadingPeaks;
+        if (isNewWaveform) {
+            setPeakPyramid(PeakPyramid.create(peaks.size()));
+            isLoadingPeaks = true;
+            loadingPeaks = peaks;
+            loadedBuckets = 0;
+        }
+        if (completedBuckets > loadedBuckets) {
+            pyramid.update(peaks, loadedBuckets, completedBuckets);
+            loadedBuckets = completedBuckets;
+        }
+        if (loadedBuckets == peaks.size()) {
+            //全部加载后整体重建一次，与一次性设置的结果完全相同
+            isLoadingPeaks = false;
+            loadingPeaks = null;
+            invalidateBarCache();
+        } else if (!isNewWaveform) {
+            onPeaksLoaded();
+        }
+    }
+
+    /**
+     * @return 传给{@link #updatePeaks}的波形是否还没加载完
+     */
+    public boolean isLoadingPeaks() {
+        return isLoadingPeaks;
+    }
+
+    public PeakPyramid getPeakPyramid() {
+        return pyramid;
+    }
+
+    /**
+     * @return 当前布局的小条数量，第一次绘制前为0
+     */
+    public int getBarCount() {
+        return geometry.barCount();
+    }
+
+    /**
+     * 放大倍数，整段录音铺满zoom倍的View宽度，只布局和绘制可见范围内的小条。放大前后可见范围的中心不变
+     *
+     * @param zoom 限制在[1, {@link #getMaxZoom()}]内
+     */
+    public void setZoom(float zoom) {
+        double center = viewStart + 0.5d / this.zoom;
+        float newZoom = clampZoom(zoom);
+        setViewport(newZoom, center - 0.5d / newZoom);
+    }
+
+    public float getZoom() {
+        return zoom;
+    }
+
+    /**
+     * 平移到指定的可见范围起点
+     *
+     * @param viewStart 占整段录音的比例，限制在[0, 1 - 1 / zoom]内
+     */
+    public void setViewStart(double viewStart) {
+        setViewport(zoom, viewStart);
+    }
+
+    public double getViewStart() {
+        return viewStart;
+    }
+
+    public void setMaxZoom(float maxZoom) {
+        this.maxZoom = Math.max(1f, maxZoom);
+        if (zoom > this.maxZoom) setZoom(this.maxZoom);
+    }
+
+    public float getMaxZoom() {
+        return maxZoom;
+    }
+
+    /**
+     * 是否处理双指缩放和水平平移，默认为true
+     */
+    public void setZoomEnabled(boolean zoomEnabled) {
+        isZoomEnabled = zoomEnabled;
+    }
+
+    public boolean isZoomEnabled() {
+        return isZoomEnabled;
+    }
+
+    private float clampZoom(float zoom) {
+        return Math.max(1f, Math.min(maxZoom, zoom));
+    }
+
+    private void setViewport(float zoom, double viewStart) {
+        zoom = clampZoom(zoom);
+        viewStart = Math.max(0d, Math.min(1d - 1d / zoom, viewStart));
+        if (zoom == this.zoom && viewStart == this.viewStart) return;
+        this.zoom = zoom;
+        this.viewStart = viewStart;
+        isLayoutDirty = true;
+        invalidatedProgressX = -1f;
+        invalidateBarCache();
+    }
+
+    public void setLineColor(int lineColor) {
+        this.lineColor = lineColor;
+        paint.setColor(lineColor);
+        invalidate();
+    }
+
+    public void setProgressColor(int progressColor) {
+        this.progressColor = progressColor;
+        percentPaint.setColor(progressColor);
+        invalidate();
+    }
+
+    /**
+     * 每帧的绘制指标，null时完全不统计
+     */
+    public void setOnFrameMetricsListener(OnFrameMetricsListener onFrameMetricsListener) {
+        this.onFrameMetricsListener = onFrameMetricsListener;
+    }
+
+    /**
+     * 用一次圆头drawLines绘制所有小条，效果与逐个drawRoundRect相同，但绘制操作数固定。
+     * 默认为true，false恢复逐个绘制，用于对比
+     */
+    public void setBatchedDraw(boolean batchedDraw) {
+        this.isBatchedDraw = batchedDraw;
+        invalidateBarCache();
+    }
+
+    /**
+     * 小条宽度，单位px
+     */
+    public void setLittleBarWidth(float littleBarWidth) {
+        this.littleBarWidth = littleBarWidth;
+        linePaint.setStrokeWidth(littleBarWidth);
+        placeholderLinePaint.setStrokeWidth(littleBarWidth);
+        isLayoutDirty = true;
+        invalidateBarCache();
+    }
+
+    /**
+     * 小条间隙宽度，单位px
+     */
+    public void setGapWidth(float gapWidth) {
+        this.gapWidth = gapWidth;
+        isLayoutDirty = true;
+        invalidateBarCache();
+    }
+
+    public void setCursorColor(int cursorColor) {
+        this.cursorColor = cursorColor;
+        invalidate();
+    }
+
+
+
+// </editor-fold>
+
+}
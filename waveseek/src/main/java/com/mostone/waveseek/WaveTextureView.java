@@ -0,0 +1,336 @@
+package com.mostone.waveseek;
+
+import android.content.Context;
+import android.graphics.Color;
+import android.graphics.SurfaceTexture;
+import android.util.AttributeSet;
+import android.view.Display;
+import android.view.TextureView;
+import android.view.View;
+
+/**
+ * ================================================
+ * 描    述: 在独立渲染线程绘制的{@link WaveView}，属性和接口与WaveView相同
+ * <p>
+ * 绘制内容是自己的{@link WaveLineRenderer}，由{@link WaveRenderThread}按自己的vsync节奏推进动画并绘制到TextureView的Surface，
+ * UI线程繁忙时波形不掉帧。renderer只在渲染线程访问，修改状态的接口都转发到渲染线程执行，
+ * 音量和振幅经由renderer的volatile字段和AmplitudeRing直接传入
+ * ================================================
+ */
+public class WaveTextureView extends TextureView implements TextureView.SurfaceTextureListener {
+
+    private final WaveLineRenderer renderer;
+    //attach期间存在，只在UI线程访问
+    private WaveRenderThread renderThread;
+
+    public WaveTextureView(Context context) {
+        this(context, null);
+    }
+
+    public WaveTextureView(Context context, AttributeSet attrs) {
+        this(context, attrs, 0);
+    }
+
+    public WaveTextureView(Context context, AttributeSet attrs, int defStyleAttr) {
+        super(context, attrs, defStyleAttr);
+        //与WaveView读取同样的wv*属性
+        renderer = new WaveLineRenderer(context, attrs, this);
+        setOpaque(Color.alpha(renderer.getBackGroundColor()) == 0xFF);
+        setSurfaceTextureListener(this);
+    }
+
+    @Override
+    protected void onAttachedToWindow() {
+        super.onAttachedToWindow();
+        Display display = getDisplay();
+        float refreshRate = display != null ? display.getRefreshRate() : 0f;
+        final long vsyncNanos = (long) (1000000000L / (refreshRate >= 1f ? refreshRate : 60f));
+        //先在UI线程设置好，线程启动后只在渲染线程访问
+        renderer.setVsyncNanos(vsyncNanos);
+        renderThread = new WaveRenderThread(renderer);
+        renderThread.start();
+        updatePaused();
+    }
+
+    @Override
+    protected void onDetachedFromWindow() {
+        //TextureView在这里销毁SurfaceTexture，会先回调onSurfaceTextureDestroyed
+        super.onDetachedFromWindow();
+        if (renderThread != null) {
+            renderThread.quitAndJoin();
+            renderThread = null;
+        }
+        //渲染线程已结束，可以在UI线程释放
+        renderer.release();
+    }
+
+    @Override
+    protected void onVisibilityChanged(View changedView, int visibility) {
+        super.onVisibilityChanged(changedView, visibility);
+        updatePaused();
+    }
+
+    @Override
+    protected void onWindowVisibilityChanged(int visibility) {
+        super.onWindowVisibilityChanged(visibility);
+        updatePaused();
+    }
+
+    @Override
+    public void onWindowFocusChanged(boolean hasWindowFocus) {
+        super.onWindowFocusChanged(hasWindowFocus);
+        updatePaused();
+    }
+
+    /**
+     * 与WaveView相同，只在可见且窗口有焦点时驱动动画
+     */
+    private void updatePaused() {
+        if (renderThread != null) {
+            renderThread.setPaused(!isShown() || !hasWindowFocus());
+        }
+    }
+
+    @Override
+    public void onSurfaceTextureAvailable(SurfaceTexture surface, int width, int height) {
+        if (renderThread != null) renderThread.setSurface(surface, width, height);
+    }
+
+    @Override
+    public void onSurfaceTextureSizeChanged(SurfaceTexture surface, int width, int height) {
+        if (renderThread != null) renderThread.setSize(width, height);
+    }
+
+    @Override
+    public boolean onSurfaceTextureDestroyed(SurfaceTexture surface) {
+        //等渲染线程不再使用后才允许TextureView释放
+        if (renderThread != null) renderThread.releaseSurface();
+        return true;
+    }
+
+    @Override
+    public void onSurfaceTextureUpdated(SurfaceTexture surface) {
+    }
+
+    /**
+     * 在渲染线程修改绘制内容并重绘，未attach时没有渲染线程，直接执行
+     */
+    private void queueEvent(Runnable event) {
+        if (renderThread != null) {
+            renderThread.queueEvent(event);
+        } else {
+            event.run();
+        }
+    }
+
+    /**
+     * 在渲染线程开始动画，需在UI线程调用
+     */
+    public void startAnim() {
+        queueEvent(new Runnable() {
+            @Override
+            public void run() {
+                renderer.start();
+            }
+        });
+    }
+
+    /**
+     * 在渲染线程停止动画，需在UI线程调用
+     */
+    public void stopAnim() {
+        queueEvent(new Runnable() {
+            @Override
+            public void run() {
+                renderer.stop();
+            }
+        });
+    }
+
+    /**
+     * 用户设置的音量，[0,100]，可在任意线程调用
+     */
+    public void setVolume(int volume) {
+        renderer.setVolume(volume);
+    }
+
+    /**
+     * 同{@link WaveView#offerAmplitudes(short[], int, int)}，渲染线程每帧取走振幅
+     */
+    public void offerAmplitudes(short[] pcm, int offset, int length) {
+        renderer.offerAmplitudes(pcm, offset, length);
+    }
+
+    /**
+     * 同{@link WaveView#offerAmplitudes(float[], int, int)}
+     */
+    public void offerAmplitudes(float[] pcm, int offset, int length) {
+        renderer.offerAmplitudes(pcm, offset, length);
+    }
+
+    /**
+     * 同{@link WaveView#offerAmplitude(float)}
+     */
+    public void offerAmplitude(float amplitude) {
+        renderer.offerAmplitude(amplitude);
+    }
+
+    /**
+     * 同{@link WaveView#setMoveSpeed(float)}
+     */
+    public void setMoveSpeed(final float moveSpeed) {
+        queueEvent(new Runnable() {
+            @Override
+            public void run() {
+                renderer.setMoveSpeed(moveSpeed);
+            }
+        });
+    }
+
+    /**
+     * 同{@link WaveView#setRecorderMode(boolean)}
+     */
+    public void setRecorderMode(final boolean recorderMode) {
+        queueEvent(new Runnable() {
+            @Override
+            public void run() {
+                renderer.setRecorderMode(recorderMode);
+            }
+        });
+    }
+
+    /**
+     * 同{@link WaveView#setBarIntervalMillis(int)}
+     */
+    public void setBarIntervalMillis(final int millis) {
+        queueEvent(new Runnable() {
+            @Override
+            public void run() {
+                renderer.setBarIntervalMillis(millis);
+            }
+        });
+    }
+
+    /**
+     * 同{@link WaveView#pushBar(float)}，需在UI线程调用
+     *
+     * @param level 小条高度，[0,1]
+     */
+    public void pushBar(final float level) {
+        queueEvent(new Runnable() {
+            @Override
+            public void run() {
+                renderer.pushBar(level);
+            }
+        });
+    }
+
+    /**
+     * 同{@link WaveView#clearBars()}
+     */
+    public void clearBars() {
+        queueEvent(new Runnable() {
+            @Override
+            public void run() {
+                renderer.clearBars();
+            }
+        });
+    }
+
+    /**
+     * 同{@link WaveView#setBackGroundColor(int)}，不是完全不透明的颜色会使TextureView半透明
+     */
+    public void setBackGroundColor(final int backGroundColor) {
+        setOpaque(Color.alpha(backGroundColor) == 0xFF);
+        queueEvent(new Runnable() {
+            @Override
+            public void run() {
+                renderer.setBackGroundColor(backGroundColor);
+            }
+        });
+    }
+
+    /**
+     * 同{@link WaveView#setLineColor(int)}
+     */
+    public void setLineColor(final int lineColor) {
+        queueEvent(new Runnable() {
+            @Override
+            public void run() {
+                renderer.setLineColor(lineColor);
+            }
+        });
+    }
+
+    /**
+     * 同{@link WaveView#setPrecomputedPhaseSteps(int)}
+     */
+    public void setPrecomputedPhaseSteps(final int steps) {
+        queueEvent(new Runnable() {
+            @Override
+            public void run() {
+                renderer.setPrecomputedPhaseSteps(steps);
+            }
+        });
+    }
+
+    /**
+     * 同{@link WaveView#setOnFrameMetricsListener(OnFrameMetricsListener)}，但在渲染线程回调，View参数为这个WaveTextureView
+     */
+    public void setOnFrameMetricsListener(final OnFrameMetricsListener onFrameMetricsListener) {
+        queueEvent(new Runnable() {
+            @Override
+            public void run() {
+                renderer.setOnFrameMetricsListener(onFrameMetricsListener);
+            }
+        });
+    }
+
+    /**
+     * 同{@link WaveView#setBatchedDraw(boolean)}
+     */
+    public void setBatchedDraw(final boolean batchedDraw) {
+        queueEvent(new Runnable() {
+            @Override
+            public void run() {
+                renderer.setBatchedDraw(batchedDraw);
+            }
+        });
+    }
+
+    /**
+     * 同{@link WaveView#setUseSineTable(boolean)}
+     */
+    public void setUseSineTable(final boolean useSineTable) {
+        queueEvent(new Runnable() {
+            @Override
+            public void run() {
+                renderer.setUseSineTable(useSineTable);
+            }
+        });
+    }
+
+    /**
+     * 同{@link WaveView#setTargetFrameRate(int)}，由渲染线程控制节奏
+     */
+    public void setTargetFrameRate(final int fps) {
+        queueEvent(new Runnable() {
+            @Override
+            public void run() {
+                renderer.setTargetFrameRate(fps);
+            }
+        });
+    }
+
+    /**
+     * 同{@link WaveView#setSensibility(int)}
+     */
+    public void setSensibility(final int sensibility) {
+        queueEvent(new Runnable() {
+            @Override
+            public void run() {
+                renderer.setSensibility(sensibility);
+            }
+        });
+    }
+}
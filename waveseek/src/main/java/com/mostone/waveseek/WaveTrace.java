@@ -0,0 +1,47 @@
+package com.mostone.waveseek;
+
+import android.os.Trace;
+
+/**
+ * ================================================
+ * 描    述: 波形绘制的systrace/Perfetto埋点开关
+ * <p>
+ * 默认关闭，关闭时每个埋点只是一次静态字段读取
+ * ================================================
+ */
+public final class WaveTrace {
+
+    private static volatile boolean enabled = false;
+
+    private WaveTrace() {
+    }
+
+    /**
+     * 是否在波形View的几何计算和绘制前后输出android.os.Trace片段
+     */
+    public static void setEnabled(boolean enabled) {
+        WaveTrace.enabled = enabled;
+    }
+
+    public static boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * @return 是否真的开始了一个片段，需原样传给{@link #end}
+     */
+    static boolean begin(String sectionName) {
+        if (!enabled) return false;
+        Trace.beginSection(sectionName);
+        return true;
+    }
+
+    /**
+     * 必须与{@link #begin}成对调用，中途修改开关也不会破坏片段的嵌套
+     *
+     * @param began {@link #begin}的返回值
+     */
+    static void end(boolean began) {
+        if (began) Trace.endSection();
+    }
+}
@@ -0,0 +1,311 @@
+package com.mostone.waveseek;
+
+import android.content.Context;
+import android.graphics.Canvas;
+import android.util.AttributeSet;
+import android.view.Choreographer;
+import android.view.Display;
+import android.view.View;
+
+/**
+ * ================================================
+ * 作    者：JayGoo
+ * 版    本：1.0.0
+ * 创建日期：2017/7/21
+ * 描    述: 绘制波浪曲线
+ * ================================================
+ */
+public class WaveView extends View {
+    private static final String TAG = "WaveLineView";
+
+    //绘制内容和动画状态，只在UI线程访问
+    private final WaveLineRenderer renderer;
+
+    public WaveView(Context context) {
+        this(context, null);
+    }
+
+    public WaveView(Context context, AttributeSet attrs) {
+        this(context, attrs, 0);
+    }
+
+    public WaveView(Context context, AttributeSet attrs, int defStyleAttr) {
+        super(context, attrs, defStyleAttr);
+        renderer = new WaveLineRenderer(context, attrs, this);
+    }
+
+    @Override
+    protected void onDraw(Canvas canvas) {
+        super.onDraw(canvas);
+        renderer.draw(canvas);
+    }
+
+    @Override
+    protected void onSizeChanged(int w, int h, int oldw, int oldh) {
+        super.onSizeChanged(w, h, oldw, oldh);
+        renderer.onSurfaceChanged(w, h);
+    }
+
+    //帧回调是否已注册
+    private boolean isFrameCallbackPosted = false;
+
+    private final Choreographer.FrameCallback frameCallback = new Choreographer.FrameCallback() {
+        @Override
+        public void doFrame(long frameTimeNanos) {
+            isFrameCallbackPosted = false;
+            if (!shouldAnimate()) {
+                renderer.onPause();
+                return;
+            }
+            if (renderer.advanceFrame(frameTimeNanos)) {
+                invalidate();
+            }
+            //限制帧率时直接延迟到下一次需要绘制的vsync，中间的vsync不唤醒主线程
+            postFrameCallback(renderer.nextFrameDelayNanos(System.nanoTime()));
+        }
+    };
+
+    WaveLineRenderer getRenderer() {
+        return renderer;
+    }
+
+    /**
+     * 开始动画，需在UI线程调用
+     */
+    public void startAnim() {
+        renderer.start();
+        updateAnimLoop();
+        invalidate();
+    }
+
+    /**
+     * 停止动画，需在UI线程调用
+     */
+    public void stopAnim() {
+        renderer.stop();
+        updateAnimLoop();
+    }
+
+    /**
+     * 只有在已开始、已attach、可见且窗口有焦点时才驱动动画，否则不产生任何后台唤醒
+     */
+    private boolean shouldAnimate() {
+        return renderer.isAnimating() && getWindowToken() != null && isShown() && hasWindowFocus();
+    }
+
+    private void updateAnimLoop() {
+        if (shouldAnimate()) {
+            postFrameCallback(0L);
+        } else if (isFrameCallbackPosted) {
+            Choreographer.getInstance().removeFrameCallback(frameCallback);
+            isFrameCallbackPosted = false;
+            renderer.onPause();
+        }
+    }
+
+    private void postFrameCallback(long delayNanos) {
+        if (isFrameCallbackPosted) return;
+        isFrameCallbackPosted = true;
+        //延迟按毫秒向下取整，到期后在下一个vsync回调，不会错过需要绘制的那一帧
+        long delayMillis = delayNanos / 1000000L;
+        if (delayMillis > 0) {
+            Choreographer.getInstance().postFrameCallbackDelayed(frameCallback, delayMillis);
+        } else {
+            Choreographer.getInstance().postFrameCallback(frameCallback);
+        }
+    }
+
+    @Override
+    protected void onAttachedToWindow() {
+        super.onAttachedToWindow();
+        Display display = getDisplay();
+        float refreshRate = display != null ? display.getRefreshRate() : 0f;
+        renderer.setVsyncNanos((long) (1000000000L / (refreshRate >= 1f ? refreshRate : 60f)));
+        updateAnimLoop();
+    }
+
+    @Override
+    protected void onDetachedFromWindow() {
+        super.onDetachedFromWindow();
+        Choreographer.getInstance().removeFrameCallback(frameCallback);
+        isFrameCallbackPosted = false;
+        renderer.onPause();
+        renderer.release();
+    }
+
+    @Override
+    protected void onVisibilityChanged(View changedView, int visibility) {
+        super.onVisibilityChanged(changedView, visibility);
+        updateAnimLoop();
+    }
+
+    @Override
+    protected void onWindowVisibilityChanged(int visibility) {
+        super.onWindowVisibilityChanged(visibility);
+        updateAnimLoop();
+    }
+
+    @Override
+    public void onWindowFocusChanged(boolean hasWindowFocus) {
+        super.onWindowFocusChanged(hasWindowFocus);
+        updateAnimLoop();
+    }
+
+    /**
+     * the wave line animation move speed from left to right
+     * you can use negative number to make the animation from right to left
+     * the default value is 290F,the smaller, the faster
+     *
+     * @param moveSpeed
+     */
+    public void setMoveSpeed(float moveSpeed) {
+        renderer.setMoveSpeed(moveSpeed);
+    }
+
+
+    /**
+     * 用户设置的音量，[0,100]，可在任意线程调用
+     */
+    public void setVolume(int volume) {
+        renderer.setVolume(volume);
+    }
+
+    /**
+     * 按音频速率写入16位PCM，例如每次AudioRecord读取之后立即调用。
+     * 无锁且不分配，但必须始终在同一个线程调用。每帧取上一帧以来所有采样的最大值作为音量
+     */
+    public void offerAmplitudes(short[] pcm, int offset, int length) {
+        renderer.offerAmplitudes(pcm, offset, length);
+    }
+
+    /**
+     * 同{@link #offerAmplitudes(short[], int, int)}，用于[-1,1]的浮点PCM
+     */
+    public void offerAmplitudes(float[] pcm, int offset, int length) {
+        renderer.offerAmplitudes(pcm, offset, length);
+    }
+
+    /**
+     * 同{@link #offerAmplitudes(short[], int, int)}，写入单个[0,1]的振幅
+     */
+    public void offerAmplitude(float amplitude) {
+        renderer.offerAmplitude(amplitude);
+    }
+
+    /**
+     * 录音模式：新的小条从右侧进入，历史向左滚动。
+     * 每个小条取{@link #setBarIntervalMillis}时长内写入振幅的最大值，没有写入时使用{@link #setVolume}设置的音量。
+     * 每帧只绘制新的小条，历史保存在缓存位图中
+     */
+    public void setRecorderMode(boolean recorderMode) {
+        if (renderer.isRecorderMode() == recorderMode) return;
+        renderer.setRecorderMode(recorderMode);
+        invalidate();
+    }
+
+    public boolean isRecorderMode() {
+        return renderer.isRecorderMode();
+    }
+
+    /**
+     * 录音模式下每个小条代表的时长，默认为50。0表示只由{@link #pushBar}添加小条
+     */
+    public void setBarIntervalMillis(int millis) {
+        renderer.setBarIntervalMillis(millis);
+    }
+
+    public int getBarIntervalMillis() {
+        return renderer.getBarIntervalMillis();
+    }
+
+    /**
+     * 录音模式下添加一个小条，需在UI线程调用
+     *
+     * @param level 小条高度，[0,1]
+     */
+    public void pushBar(float level) {
+        renderer.pushBar(level);
+        invalidate();
+    }
+
+    /**
+     * 清除录音模式的所有小条，例如开始新的录音时
+     */
+    public void clearBars() {
+        renderer.clearBars();
+        invalidate();
+    }
+
+    public void setBackGroundColor(int backGroundColor) {
+        renderer.setBackGroundColor(backGroundColor);
+    }
+
+    public void setLineColor(int lineColor) {
+        renderer.setLineColor(lineColor);
+    }
+
+    /**
+     * 布局时按一个周期内的相位步数预先计算波形，之后每帧只需查表线性插值，再乘以当前音量。
+     * 占用steps * 小条数量个float，默认为0，不预计算，每帧计算
+     *
+     * @param steps 例如64或128
+     */
+    public void setPrecomputedPhaseSteps(int steps) {
+        renderer.setPrecomputedPhaseSteps(steps);
+    }
+
+    public int getPrecomputedPhaseSteps() {
+        return renderer.getPrecomputedPhaseSteps();
+    }
+
+    /**
+     * 每帧的绘制指标，null时完全不统计
+     */
+    public void setOnFrameMetricsListener(OnFrameMetricsListener onFrameMetricsListener) {
+        renderer.setOnFrameMetricsListener(onFrameMetricsListener);
+    }
+
+    /**
+     * 用一次圆头drawLines绘制所有小条，效果与逐个drawRoundRect相同，但绘制操作数固定。
+     * 默认为true，false恢复逐个绘制，用于对比
+     */
+    public void setBatchedDraw(boolean batchedDraw) {
+        renderer.setBatchedDraw(batchedDraw);
+        invalidate();
+    }
+
+    /**
+     * 使用共享的正弦查找表代替Math.sin，绝对误差小于5e-7。默认为true
+     */
+    public void setUseSineTable(boolean useSineTable) {
+        renderer.setUseSineTable(useSineTable);
+    }
+
+    /**
+     * 波浪动画的目标帧率，例如60、30或15。动画速度与帧率无关，降低帧率只减少开销。
+     * 默认为0，跟随屏幕刷新率
+     */
+    public void setTargetFrameRate(int fps) {
+        renderer.setTargetFrameRate(fps);
+        //已按旧帧率延迟的回调立即重新安排
+        if (isFrameCallbackPosted) {
+            Choreographer.getInstance().removeFrameCallback(frameCallback);
+            isFrameCallbackPosted = false;
+            updateAnimLoop();
+        }
+    }
+
+    public int getTargetFrameRate() {
+        return renderer.getTargetFrameRate();
+    }
+
+    /**
+     * Sensitivity, the bigger the more sensitive [1,10]
+     * the default value is 5
+     *
+     * @param sensibility
+     */
+    public void setSensibility(int sensibility) {
+        renderer.setSensibility(sensibility);
+    }
+}
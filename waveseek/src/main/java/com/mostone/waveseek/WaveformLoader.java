@@ -0,0 +1,381 @@
+package com.mostone.waveseek;
+
+import android.annotation.TargetApi;
+import android.content.Context;
+import android.net.Uri;
+import android.os.Build;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.Process;
+
+import com.mostone.waveseek.core.MappedPeakExtractor;
+import com.mostone.waveseek.core.PcmFormat;
+import com.mostone.waveseek.core.ParallelPeakReducer;
+import com.mostone.waveseek.core.PcmSource;
+import com.mostone.waveseek.core.PeakCache;
+import com.mostone.waveseek.core.PeakPipeline;
+import com.mostone.waveseek.core.Peaks;
+import com.mostone.waveseek.core.WavHeader;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * ================================================
+ * 描    述: 在后台线程从音频文件提取波形，结果回调到主线程
+ * <p>
+ * 所有任务在同一个低优先级线程上依次执行。WAV/裸PCM的提取过程见{@link MappedPeakExtractor}，
+ * 压缩音频的解码和归约见{@link PeakPipeline}，解码阶段在另外的线程上运行。
+ * 设置了{@link PeakCache}时，本地文件的结果按路径、长度和修改时间缓存，再次打开时直接读取映射的缓存文件
+ * ================================================
+ */
+public final class WaveformLoader {
+
+    public interface Callback {
+
+        /**
+         * 主线程回调，已取消的任务不会回调
+         */
+        void onPeaksLoaded(Peaks peaks);
+
+        void onPeaksFailed(IOException e);
+    }
+
+    /**
+     * 解码压缩音频时逐段回调，可直接交给{@link WaveSeekBar#updatePeaks}
+     */
+    public interface ProgressCallback extends Callback {
+
+        /**
+         * 主线程回调，[0, completedBuckets)范围内的桶已经确定，已取消的任务不会回调
+         *
+         * @param peaks 与{@link #onPeaksLoaded}是同一个对象
+         */
+        void onPeaksProgress(Peaks peaks, int completedBuckets);
+    }
+
+    private static final ExecutorService EXECUTOR =
+            Executors.newSingleThreadExecutor(backgroundThreadFactory("WaveformLoader"));
+    //PeakPipeline的解码阶段，每个解码中的任务占用一个线程，空闲后回收
+    private static final ExecutorService DECODER =
+            Executors.newCachedThreadPool(backgroundThreadFactory("WaveformDecoder"));
+
+    private static final Handler MAIN_HANDLER = new Handler(Looper.getMainLooper());
+    private static final Executor MAIN_EXECUTOR = new Executor() {
+        @Override
+        public void execute(Runnable command) {
+            MAIN_HANDLER.post(command);
+        }
+    };
+
+    //WAV/裸PCM归约的并行度，1为顺序归约
+    private static int parallelism = Runtime.getRuntime().availableProcessors();
+    private static ParallelPeakReducer reducer;
+    private static volatile PeakCache peakCache;
+
+    private WaveformLoader() {
+    }
+
+    /**
+     * 设置后，本地文件提取的结果写入缓存，之后以相同的桶数打开未修改的同一文件时直接读取缓存，不再解码。
+     * 桶数不同时重新提取并替换缓存。content://等没有本地路径的Uri不使用缓存
+     *
+     * @param cache 例如放在Context.getCacheDir()下，null表示不使用缓存
+     */
+    public static void setPeakCache(PeakCache cache) {
+        peakCache = cache;
+    }
+
+    public static PeakCache getPeakCache() {
+        return peakCache;
+    }
+
+    /**
+     * @param bucketCount 桶数，通常取{@link WaveSeekBar#getBarCount()}，或者一个足够大的固定值
+     * @return 可用于取消，取消后不再回调
+     */
+    public static Future<Peaks> loadWav(final File file, final int bucketCount, Callback callback) {
+        return submit(new Callable<Peaks>() {
+            @Override
+            public Peaks call() throws IOException {
+                PeakCache cache = peakCache;
+                PeakCache.Key key = cache != null ? PeakCache.Key.forFile(file) : null;
+                Peaks peaks = readCache(cache, key, bucketCount);
+                if (peaks != null) return peaks;
+                peaks = MappedPeakExtractor.extractWav(file, bucketCount, reducer());
+                if (cache != null) {
+                    PcmFormat format;
+                    long frames;
+                    RandomAccessFile raf = new RandomAccessFile(file, "r");
+                    try {
+                        WavHeader header = WavHeader.read(raf.getChannel());
+                        format = header.format();
+                        frames = header.frames();
+                    } finally {
+                        raf.close();
+                    }
+                    writeCache(cache, key, peaks, format, frames);
+                }
+                return peaks;
+            }
+        }, callback);
+    }
+
+    /**
+     * @param file   没有文件头的PCM
+     * @param format 采样格式
+     */
+    public static Future<Peaks> loadPcm(final File file, final PcmFormat format, final int bucketCount,
+                                        Callback callback) {
+        return submit(new Callable<Peaks>() {
+            @Override
+            public Peaks call() throws IOException {
+                PeakCache cache = peakCache;
+                PeakCache.Key key = cache != null ? PeakCache.Key.forFile(file) : null;
+                Peaks peaks = readCache(cache, key, bucketCount);
+                if (peaks != null) return peaks;
+                peaks = MappedPeakExtractor.extractPcm(file, format, bucketCount, reducer());
+                writeCache(cache, key, peaks, format, file.length() / format.frameSize());
+                return peaks;
+            }
+        }, callback);
+    }
+
+    /**
+     * 归约WAV/PCM文件使用的核数，任何值的结果都相同。
+     * 默认为可用的处理器数量，1表示在加载线程上归约。Android 5.0以下没有ForkJoinPool，总是1
+     */
+    public static synchronized void setParallelism(int parallelism) {
+        parallelism = Math.max(1, parallelism);
+        if (parallelism == WaveformLoader.parallelism) return;
+        WaveformLoader.parallelism = parallelism;
+        //不关闭旧的pool，进行中的任务可以继续使用，空闲后其工作线程会自动退出
+        reducer = null;
+    }
+
+    public static synchronized int getParallelism() {
+        return Build.VERSION.SDK_INT >= Build.VERSION_CODES.LOLLIPOP ? parallelism : 1;
+    }
+
+    /**
+     * @return 需要顺序归约时返回null
+     */
+    private static synchronized ParallelPeakReducer reducer() {
+        if (getParallelism() <= 1) return null;
+        if (reducer == null) reducer = ParallelReducers.create(parallelism);
+        return reducer;
+    }
+
+    @TargetApi(Build.VERSION_CODES.LOLLIPOP)
+    private static final class ParallelReducers {
+
+        static ParallelPeakReducer create(int parallelism) {
+            return new ParallelPeakReducer(parallelism, new ForkJoinPool.ForkJoinWorkerThreadFactory() {
+                @Override
+                public ForkJoinWorkerThread newThread(ForkJoinPool pool) {
+                    ForkJoinWorkerThread thread = new ForkJoinWorkerThread(pool) {
+                        @Override
+                        protected void onStart() {
+                            super.onStart();
+                            Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+                        }
+                    };
+                    thread.setName("WaveformReducer-" + thread.getPoolIndex());
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+        }
+    }
+
+    /**
+     * 解码AAC/MP3/Opus等压缩音频，解码器见{@link MediaCodecPcmSource}。
+     * callback为{@link ProgressCallback}时随解码进度逐段回调
+     *
+     * @param path 本地文件路径
+     */
+    public static Future<Peaks> decode(final String path, int bucketCount, Callback callback) {
+        return decode(new SourceFactory() {
+            @Override
+            public PcmSource create() throws IOException {
+                return new MediaCodecPcmSource(path);
+            }
+        }, new File(path), bucketCount, callback);
+    }
+
+    /**
+     * @param uri file://或content://等MediaExtractor支持的Uri
+     */
+    public static Future<Peaks> decode(Context context, final Uri uri, int bucketCount, Callback callback) {
+        final Context appContext = context.getApplicationContext();
+        //只有本地文件有可靠的长度和修改时间作为缓存的键
+        File file = "file".equals(uri.getScheme()) && uri.getPath() != null ? new File(uri.getPath()) : null;
+        return decode(new SourceFactory() {
+            @Override
+            public PcmSource create() throws IOException {
+                return new MediaCodecPcmSource(appContext, uri);
+            }
+        }, file, bucketCount, callback);
+    }
+
+    private interface SourceFactory {
+        PcmSource create() throws IOException;
+    }
+
+    /**
+     * @param file 本地文件，用作缓存的键，没有时为null
+     */
+    private static Future<Peaks> decode(final SourceFactory factory, final File file, final int bucketCount,
+                                        Callback callback) {
+        final ProgressRelay relay = callback instanceof ProgressCallback
+                ? new ProgressRelay((ProgressCallback) callback) : null;
+        LoadTask task = submit(new Callable<Peaks>() {
+            @Override
+            public Peaks call() throws IOException {
+                PeakCache cache = file != null ? peakCache : null;
+                PeakCache.Key key = cache != null ? PeakCache.Key.forFile(file) : null;
+                Peaks peaks = readCache(cache, key, bucketCount);
+                if (peaks != null) return peaks;
+                PeakPipeline pipeline = new PeakPipeline(factory.create(), bucketCount);
+                if (relay != null) pipeline.setListener(relay, MAIN_EXECUTOR);
+                //取消时中断当前线程，PeakPipeline随之停止解码阶段并释放解码器
+                peaks = pipeline.run(DECODER);
+                if (pipeline.format() != null) writeCache(cache, key, peaks, pipeline.format(), pipeline.frames());
+                return peaks;
+            }
+        }, callback);
+        if (relay != null) relay.task = task;
+        return task;
+    }
+
+    /**
+     * 把PeakPipeline的进度转发给回调，任务取消后不再转发
+     */
+    private static final class ProgressRelay implements PeakPipeline.Listener {
+
+        private final ProgressCallback callback;
+        volatile LoadTask task;
+
+        ProgressRelay(ProgressCallback callback) {
+            this.callback = callback;
+        }
+
+        @Override
+        public void onPeaksUpdated(Peaks peaks, int completedBuckets) {
+            LoadTask task = this.task;
+            if (task != null && task.isCancelled) return;
+            callback.onPeaksProgress(peaks, completedBuckets);
+        }
+    }
+
+    /**
+     * 缓存只是加速，读取失败按未命中处理
+     *
+     * @return 未命中或桶数不同时返回null
+     */
+    private static Peaks readCache(PeakCache cache, PeakCache.Key key, int bucketCount) {
+        if (cache == null) return null;
+        PeakCache.Entry entry;
+        try {
+            entry = cache.get(key);
+        } catch (IOException e) {
+            return null;
+        }
+        if (entry == null || entry.pyramid().baseSize() != bucketCount) return null;
+        return entry.peaks();
+    }
+
+    /**
+     * 写入失败不影响本次结果，下次重新提取
+     */
+    private static void writeCache(PeakCache cache, PeakCache.Key key, Peaks peaks, PcmFormat format, long frames) {
+        if (cache == null) return;
+        try {
+            cache.put(key, peaks, format.sampleRate(), format.channels(), frames);
+        } catch (IOException e) {
+            //下次打开时重新提取
+        }
+    }
+
+    private static ThreadFactory backgroundThreadFactory(final String name) {
+        return new ThreadFactory() {
+            @Override
+            public Thread newThread(final Runnable r) {
+                Thread thread = new Thread(new Runnable() {
+                    @Override
+                    public void run() {
+                        Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+                        r.run();
+                    }
+                }, name);
+                thread.setDaemon(true);
+                return thread;
+            }
+        };
+    }
+
+    private static LoadTask submit(Callable<Peaks> callable, Callback callback) {
+        LoadTask task = new LoadTask(callable, callback);
+        EXECUTOR.execute(task);
+        return task;
+    }
+
+    private static final class LoadTask extends FutureTask<Peaks> {
+
+        private final Callback callback;
+        //任务完成后FutureTask不再接受取消，另用标记保证取消后不回调
+        private volatile boolean isCancelled = false;
+
+        LoadTask(Callable<Peaks> callable, Callback callback) {
+            super(callable);
+            this.callback = callback;
+        }
+
+        @Override
+        public boolean cancel(boolean mayInterruptIfRunning) {
+            isCancelled = true;
+            return super.cancel(mayInterruptIfRunning);
+        }
+
+        @Override
+        protected void done() {
+            if (isCancelled) return;
+            MAIN_HANDLER.post(new Runnable() {
+                @Override
+                public void run() {
+                    if (isCancelled) return;
+                    deliver();
+                }
+            });
+        }
+
+        private void deliver() {
+            try {
+                callback.onPeaksLoaded(get());
+            } catch (ExecutionException e) {
+                Throwable cause = e.getCause();
+                if (cause instanceof IOException) {
+                    callback.onPeaksFailed((IOException) cause);
+                } else if (cause instanceof RuntimeException) {
+                    throw (RuntimeException) cause;
+                } else {
+                    throw new RuntimeException(cause);
+                }
+            } catch (InterruptedException e) {
+                //已完成的任务get()不会阻塞
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+}
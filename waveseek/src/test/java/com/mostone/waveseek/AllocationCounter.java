@@ -0,0 +1,52 @@
+package com.mostone.waveseek;
+
+import java.lang.management.ManagementFactory;
+
+/**
+ * 统计当前线程分配的字节数，依赖HotSpot的com.sun.management.ThreadMXBean
+ */
+final class AllocationCounter {
+
+    private final com.sun.management.ThreadMXBean threadBean;
+    private final long threadId = Thread.currentThread().getId();
+    //两次连续读取之间的固有分配，读取本身会分配少量临时数组
+    private final long overhead;
+
+    private AllocationCounter(com.sun.management.ThreadMXBean threadBean) {
+        this.threadBean = threadBean;
+        long min = Long.MAX_VALUE;
+        for (int i = 0; i < 16; i++) {
+            long start = threadBean.getThreadAllocatedBytes(threadId);
+            long end = threadBean.getThreadAllocatedBytes(threadId);
+            min = Math.min(min, end - start);
+        }
+        this.overhead = min;
+    }
+
+    /**
+     * @return 当前JVM不支持线程分配统计时返回null
+     */
+    static AllocationCounter create() {
+        java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if (!(bean instanceof com.sun.management.ThreadMXBean)) return null;
+        com.sun.management.ThreadMXBean threadBean = (com.sun.management.ThreadMXBean) bean;
+        if (!threadBean.isThreadAllocatedMemorySupported()) return null;
+        if (!threadBean.isThreadAllocatedMemoryEnabled()) {
+            threadBean.setThreadAllocatedMemoryEnabled(true);
+        }
+        return new AllocationCounter(threadBean);
+    }
+
+    long start() {
+        return threadBean.getThreadAllocatedBytes(threadId);
+    }
+
+    /**
+     * @param start {@link #start()}的返回值
+     * @return 期间当前线程分配的字节数，已扣除读取本身的开销
+     */
+    long stop(long start) {
+        long end = threadBean.getThreadAllocatedBytes(threadId);
+        return Math.max(0L, end - start - overhead);
+    }
+}
@@ -0,0 +1,257 @@
+package com.mostone.waveseek;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Matrix;
+import android.graphics.Paint;
+import android.graphics.Path;
+import android.graphics.PorterDuff;
+import android.graphics.Rect;
+import android.graphics.RectF;
+
+/**
+ * 只记录调用次数的Canvas，不做任何实际绘制，也不产生分配
+ * <p>
+ * draw*计为绘制操作，saveLayer*计为离屏图层
+ */
+class OpCountingCanvas extends Canvas {
+
+    private final int width;
+    private final int height;
+
+    int drawOps;
+    int saveLayers;
+    int clips;
+    private int saveCount = 1;
+
+    OpCountingCanvas(int width, int height) {
+        this.width = width;
+        this.height = height;
+    }
+
+    void reset() {
+        drawOps = 0;
+        saveLayers = 0;
+        clips = 0;
+    }
+
+    @Override
+    public int getWidth() {
+        return width;
+    }
+
+    @Override
+    public int getHeight() {
+        return height;
+    }
+
+    @Override
+    public boolean isHardwareAccelerated() {
+        return false;
+    }
+
+    // <editor-fold defaultstate="collapsed" desc="图层">
+
+    @Override
+    public int save() {
+        return saveCount++;
+    }
+
+    @Override
+    public int saveLayer(RectF bounds, Paint paint, int saveFlags) {
+        saveLayers++;
+        return save();
+    }
+
+    @Override
+    public int saveLayer(RectF bounds, Paint paint) {
+        saveLayers++;
+        return save();
+    }
+
+    @Override
+    public int saveLayer(float left, float top, float right, float bottom, Paint paint, int saveFlags) {
+        saveLayers++;
+        return save();
+    }
+
+    @Override
+    public int saveLayer(float left, float top, float right, float bottom, Paint paint) {
+        saveLayers++;
+        return save();
+    }
+
+    @Override
+    public int saveLayerAlpha(RectF bounds, int alpha, int saveFlags) {
+        saveLayers++;
+        return save();
+    }
+
+    @Override
+    public int saveLayerAlpha(RectF bounds, int alpha) {
+        saveLayers++;
+        return save();
+    }
+
+    @Override
+    public int saveLayerAlpha(float left, float top, float right, float bottom, int alpha, int saveFlags) {
+        saveLayers++;
+        return save();
+    }
+
+    @Override
+    public int saveLayerAlpha(float left, float top, float right, float bottom, int alpha) {
+        saveLayers++;
+        return save();
+    }
+
+    @Override
+    public void restore() {
+        if (saveCount <= 1) throw new IllegalStateException("Underflow in restore");
+        saveCount--;
+    }
+
+    @Override
+    public void restoreToCount(int saveCount) {
+        if (saveCount < 1 || saveCount > this.saveCount) {
+            throw new IllegalArgumentException("Invalid save count " + saveCount);
+        }
+        this.saveCount = saveCount;
+    }
+
+    @Override
+    public int getSaveCount() {
+        return saveCount;
+    }
+
+    // </editor-fold>
+
+    // <editor-fold defaultstate="collapsed" desc="变换与裁剪">
+
+    @Override
+    public void translate(float dx, float dy) {
+    }
+
+    @Override
+    public void scale(float sx, float sy) {
+    }
+
+    @Override
+    public void concat(Matrix matrix) {
+    }
+
+    @Override
+    public boolean clipRect(float left, float top, float right, float bottom) {
+        clips++;
+        return true;
+    }
+
+    @Override
+    public boolean clipRect(RectF rect) {
+        clips++;
+        return true;
+    }
+
+    @Override
+    public boolean clipRect(Rect rect) {
+        clips++;
+        return true;
+    }
+
+    @Override
+    public boolean clipRect(int left, int top, int right, int bottom) {
+        clips++;
+        return true;
+    }
+
+    // </editor-fold>
+
+    // <editor-fold defaultstate="collapsed" desc="绘制">
+
+    @Override
+    public void drawLines(float[] pts, int offset, int count, Paint paint) {
+        drawOps++;
+    }
+
+    @Override
+    public void drawLines(float[] pts, Paint paint) {
+        drawOps++;
+    }
+
+    @Override
+    public void drawLine(float startX, float startY, float stopX, float stopY, Paint paint) {
+        drawOps++;
+    }
+
+    @Override
+    public void drawRect(RectF rect, Paint paint) {
+        drawOps++;
+    }
+
+    @Override
+    public void drawRect(Rect r, Paint paint) {
+        drawOps++;
+    }
+
+    @Override
+    public void drawRect(float left, float top, float right, float bottom, Paint paint) {
+        drawOps++;
+    }
+
+    @Override
+    public void drawRoundRect(RectF rect, float rx, float ry, Paint paint) {
+        drawOps++;
+    }
+
+    @Override
+    public void drawRoundRect(float left, float top, float right, float bottom, float rx, float ry, Paint paint) {
+        drawOps++;
+    }
+
+    @Override
+    public void drawCircle(float cx, float cy, float radius, Paint paint) {
+        drawOps++;
+    }
+
+    @Override
+    public void drawPath(Path path, Paint paint) {
+        drawOps++;
+    }
+
+    @Override
+    public void drawPaint(Paint paint) {
+        drawOps++;
+    }
+
+    @Override
+    public void drawColor(int color) {
+        drawOps++;
+    }
+
+    @Override
+    public void drawColor(int color, PorterDuff.Mode mode) {
+        drawOps++;
+    }
+
+    @Override
+    public void drawBitmap(Bitmap bitmap, float left, float top, Paint paint) {
+        drawOps++;
+    }
+
+    @Override
+    public void drawBitmap(Bitmap bitmap, Rect src, RectF dst, Paint paint) {
+        drawOps++;
+    }
+
+    @Override
+    public void drawBitmap(Bitmap bitmap, Rect src, Rect dst, Paint paint) {
+        drawOps++;
+    }
+
+    @Override
+    public void drawBitmap(Bitmap bitmap, Matrix matrix, Paint paint) {
+        drawOps++;
+    }
+
+    // </editor-fold>
+}
@@ -0,0 +1,399 @@
+package com.mostone.waveseek;
+
+import android.content.Context;
+import android.view.View;
+
+import androidx.test.core.app.ApplicationProvider;
+
+import com.mostone.waveseek.core.Peaks;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+import org.robolectric.shadows.ShadowLooper;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * WaveView和WaveSeekBar稳定状态下每帧的绘制预算：
+ * 不产生分配、绘制操作数有上限、不使用离屏图层
+ * <p>
+ * 直接以计数Canvas驱动onDraw，预热后逐帧统计。统计期间的绘制全部落在计数Canvas上，
+ * 不经过Robolectric的位图Canvas，分配结果只与View自身的代码有关
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 28)
+public class RenderBudgetTest {
+
+    private static final int WIDTH = 1080;
+    private static final int HEIGHT = 240;
+    private static final int WARMUP_FRAMES = 200;
+    private static final int FRAMES = 600;
+    private static final long FRAME_NANOS = 1000000000L / 60;
+
+    //稳定状态每帧允许的分配字节数，按统计期间的总量判断，任何一次分配都会超出
+    private static final long MAX_BYTES_PER_FRAME = 0;
+    //WaveView一次drawLines绘制全部小条
+    private static final int MAX_WAVE_VIEW_DRAW_OPS = 1;
+    //WaveSeekBar两次合成小条缓存，加上游标
+    private static final int MAX_SEEK_BAR_DRAW_OPS = 3;
+
+    //虚拟机不支持按线程统计分配时为null，此时只检查绘制操作数和离屏图层
+    private AllocationCounter allocations;
+    private OpCountingCanvas canvas;
+    private Context context;
+
+    @Before
+    public void setUp() {
+        allocations = AllocationCounter.create();
+        canvas = new OpCountingCanvas(WIDTH, HEIGHT);
+        context = ApplicationProvider.getApplicationContext();
+    }
+
+    @Test
+    public void waveViewSteadyFrameStaysInBudget() throws Exception {
+        final WaveView view = new WaveView(context);
+        layout(view);
+
+        Budget budget = measure(WARMUP_FRAMES, new Frame() {
+            @Override
+            void prepare(int frame) throws Exception {
+                //音量变化让平滑过程和振幅参与每一帧
+                view.setVolume((frame / 30) % 2 == 0 ? 90 : 10);
+                setElapsed(view, frame);
+            }
+
+            @Override
+            void draw(OpCountingCanvas canvas, int frame) {
+                view.onDraw(canvas);
+            }
+        });
+
+        assertWithinBudget("WaveView", budget, MAX_WAVE_VIEW_DRAW_OPS);
+        assertEquals(View.LAYER_TYPE_NONE, view.getLayerType());
+    }
+
+    @Test
+    public void waveViewPerBarFallbackDoesNotAllocate() throws Exception {
+        final WaveView view = new WaveView(context);
+        view.setBatchedDraw(false);
+        layout(view);
+
+        Budget budget = measure(WARMUP_FRAMES, new Frame() {
+            @Override
+            void prepare(int frame) throws Exception {
+                setElapsed(view, frame);
+            }
+
+            @Override
+            void draw(OpCountingCanvas canvas, int frame) {
+                view.onDraw(canvas);
+            }
+        });
+
+        assertNoAllocation("WaveView", budget);
+        assertEquals(0, budget.saveLayers);
+    }
+
+    @Test
+    public void waveViewAmplitudeFeedDoesNotAllocate() throws Exception {
+        final WaveView view = new WaveView(context);
+        layout(view);
+        //48kHz录音每帧约800个采样
+        final short[] pcm = pcm();
+
+        Budget budget = measure(WARMUP_FRAMES, new Frame() {
+            @Override
+            void prepare(int frame) throws Exception {
+                setElapsed(view, frame);
+            }
+
+            @Override
+            void draw(OpCountingCanvas canvas, int frame) {
+                view.offerAmplitudes(pcm, 0, pcm.length);
+                view.onDraw(canvas);
+            }
+        });
+
+        assertNoAllocation("WaveView", budget);
+    }
+
+    @Test
+    public void waveViewRecorderDrawsOnlyNewBars() throws Exception {
+        final WaveView view = new WaveView(context);
+        view.setRecorderMode(true);
+        view.startAnim();
+        layout(view);
+        final int[] maxNewBars = new int[1];
+        view.setOnFrameMetricsListener(new OnFrameMetricsListener() {
+            @Override
+            public void onFrameMetrics(View view, long drawTimeNanos, int barCount, int skippedFrames,
+                                       int cacheHits, int misses) {
+                maxNewBars[0] = Math.max(maxNewBars[0], barCount);
+            }
+        });
+        final short[] pcm = pcm();
+        final OpCountingCanvas cacheCanvas = new OpCountingCanvas(WIDTH, HEIGHT);
+        final int[] maxCacheDrawOps = new int[1];
+
+        //预热直到历史铺满整个宽度
+        Budget budget = measure(WARMUP_FRAMES * 4, new Frame() {
+            @Override
+            void warmedUp() throws Exception {
+                //新的小条改为画到计数Canvas上，缓存位图本身保持不变
+                view.getRenderer().setRecorderCanvas(cacheCanvas);
+                maxNewBars[0] = 0;
+            }
+
+            @Override
+            void prepare(int frame) throws Exception {
+                setElapsed(view, frame);
+                cacheCanvas.reset();
+            }
+
+            @Override
+            void draw(OpCountingCanvas canvas, int frame) {
+                view.offerAmplitudes(pcm, 0, pcm.length);
+                view.onDraw(canvas);
+                maxCacheDrawOps[0] = Math.max(maxCacheDrawOps[0], cacheCanvas.drawOps);
+            }
+        });
+
+        //环形缓存分两段合成
+        assertWithinBudget("WaveView", budget, 2);
+        //50ms一个小条，60fps时每帧最多一个
+        assertEquals(1, maxNewBars[0]);
+        //每个新的小条清除所在的槽位，再画一次
+        assertEquals(2, maxCacheDrawOps[0]);
+        assertEquals(0, cacheCanvas.saveLayers);
+    }
+
+    @Test
+    public void waveRendererPacesFramesAndStaysInBudget() throws Exception {
+        final WaveLineRenderer renderer = new WaveLineRenderer(context, null, null);
+        renderer.onSurfaceChanged(WIDTH, HEIGHT);
+        assertFalse(renderer.isAnimating());
+        renderer.setTargetFrameRate(30);
+        renderer.start();
+        assertTrue(renderer.isAnimating());
+        final int[] drawnFrames = new int[1];
+
+        //与渲染线程相同：每个vsync推进动画，需要时清除并绘制
+        Budget budget = measure(WARMUP_FRAMES, new Frame() {
+            @Override
+            void prepare(int frame) {
+                renderer.setVolume((frame / 30) % 2 == 0 ? 90 : 10);
+            }
+
+            @Override
+            void draw(OpCountingCanvas canvas, int frame) {
+                if (renderer.onFrame(frame * FRAME_NANOS)) {
+                    renderer.onDraw(canvas);
+                    if (frame >= WARMUP_FRAMES) drawnFrames[0]++;
+                }
+            }
+        });
+
+        //清除Surface，加上一次drawLines
+        assertWithinBudget("WaveLineRenderer", budget, MAX_WAVE_VIEW_DRAW_OPS + 1);
+        //60Hz的vsync限制到30fps
+        assertEquals(FRAMES / 2, drawnFrames[0]);
+
+        renderer.stop();
+        assertFalse(renderer.isAnimating());
+        assertFalse(renderer.onFrame((WARMUP_FRAMES + FRAMES) * FRAME_NANOS));
+    }
+
+    @Test
+    public void waveSeekBarSteadyFrameStaysInBudget() throws Exception {
+        final WaveSeekBar view = new WaveSeekBar(context);
+        view.setShowCursor(true);
+        layout(view);
+        final int[] cacheMisses = new int[1];
+        view.setOnFrameMetricsListener(new OnFrameMetricsListener() {
+            @Override
+            public void onFrameMetrics(View view, long drawTimeNanos, int barCount, int skippedFrames,
+                                       int cacheHits, int misses) {
+                cacheMisses[0] += misses;
+            }
+        });
+
+        Budget budget = measure(WARMUP_FRAMES, new Frame() {
+            @Override
+            void warmedUp() {
+                assertEquals("bar cache should be built once", 1, cacheMisses[0]);
+            }
+
+            @Override
+            void prepare(int frame) {
+                //每帧游标前进，覆盖裁剪合成和游标绘制
+                setProgress(view, frame);
+                assertEquals(frame, view.getPosition());
+            }
+
+            @Override
+            void draw(OpCountingCanvas canvas, int frame) {
+                view.onDraw(canvas);
+            }
+        });
+
+        assertWithinBudget("WaveSeekBar", budget, MAX_SEEK_BAR_DRAW_OPS);
+        assertEquals("bar cache was rebuilt in steady state", 1, cacheMisses[0]);
+        assertEquals(View.LAYER_TYPE_NONE, view.getLayerType());
+    }
+
+    @Test
+    public void zoomedWaveSeekBarDrawsOnlyVisibleBars() throws Exception {
+        final WaveSeekBar view = new WaveSeekBar(context);
+        //一小时录音按100ms一个桶
+        Peaks peaks = new Peaks(36000);
+        for (int i = 0; i < peaks.size(); i++) {
+            float level = (i % 100) / 100f;
+            peaks.set(i, -level, level, level / 2);
+        }
+        view.setPeaks(peaks);
+        layout(view);
+        view.onDraw(canvas);
+        int unzoomedBars = view.getBarCount();
+        final int[] maxBars = new int[1];
+        view.setOnFrameMetricsListener(new OnFrameMetricsListener() {
+            @Override
+            public void onFrameMetrics(View view, long drawTimeNanos, int barCount, int skippedFrames,
+                                       int cacheHits, int misses) {
+                maxBars[0] = Math.max(maxBars[0], barCount);
+            }
+        });
+
+        view.setMaxZoom(200f);
+        view.setZoom(200f);
+        assertEquals(200f, view.getZoom(), 0f);
+        //每帧平移都会重建缓存，这里只检查布局的小条数量和绘制操作数
+        Budget budget = measure(0, new Frame() {
+            @Override
+            void prepare(int frame) {
+                //每帧平移，可见小条随之重新布局
+                view.setViewStart((double) frame / FRAMES);
+            }
+
+            @Override
+            void draw(OpCountingCanvas canvas, int frame) {
+                view.onDraw(canvas);
+            }
+        });
+
+        assertTrue("WaveSeekBar laid out " + maxBars[0] + " bars, " + unzoomedBars + " fit the width",
+                maxBars[0] <= unzoomedBars + 1);
+        assertTrue("WaveSeekBar issued " + budget.maxDrawOps + " draw ops in a frame",
+                budget.maxDrawOps <= MAX_SEEK_BAR_DRAW_OPS);
+        assertEquals("WaveSeekBar used offscreen layers", 0, budget.saveLayers);
+        assertEquals(1d - 1d / 200, view.getViewStart(), 1e-9);
+    }
+
+    /**
+     * 一帧的内容，帧序号从0开始连续编号，预热帧和统计帧共用
+     */
+    private abstract static class Frame {
+
+        /**
+         * 预热结束、开始统计之前调用一次
+         */
+        void warmedUp() throws Exception {
+        }
+
+        /**
+         * 两帧之间的状态变化，不计入预算
+         */
+        void prepare(int frame) throws Exception {
+        }
+
+        /**
+         * 一帧的绘制，计入预算
+         */
+        abstract void draw(OpCountingCanvas canvas, int frame) throws Exception;
+    }
+
+    private static final class Budget {
+        //统计期间分配的总字节数
+        long bytes;
+        int maxDrawOps;
+        int saveLayers;
+    }
+
+    /**
+     * 先绘制warmupFrames帧预热，再逐帧统计FRAMES帧的分配、绘制操作数和离屏图层
+     */
+    private Budget measure(int warmupFrames, Frame frame) throws Exception {
+        for (int i = 0; i < warmupFrames; i++) {
+            frame.prepare(i);
+            frame.draw(canvas, i);
+        }
+        frame.warmedUp();
+
+        Budget budget = new Budget();
+        for (int i = warmupFrames; i < warmupFrames + FRAMES; i++) {
+            frame.prepare(i);
+            canvas.reset();
+
+            if (allocations != null) {
+                long start = allocations.start();
+                frame.draw(canvas, i);
+                budget.bytes += allocations.stop(start);
+            } else {
+                frame.draw(canvas, i);
+            }
+
+            budget.maxDrawOps = Math.max(budget.maxDrawOps, canvas.drawOps);
+            budget.saveLayers += canvas.saveLayers;
+        }
+        return budget;
+    }
+
+    private void assertNoAllocation(String name, Budget budget) {
+        if (allocations == null) return;
+        assertTrue(name + " allocated " + budget.bytes + " bytes in " + FRAMES + " frames",
+                budget.bytes <= MAX_BYTES_PER_FRAME * FRAMES);
+    }
+
+    private void assertWithinBudget(String name, Budget budget, int maxDrawOps) {
+        assertNoAllocation(name, budget);
+        assertTrue(name + " issued " + budget.maxDrawOps + " draw ops in a frame",
+                budget.maxDrawOps <= maxDrawOps);
+        assertEquals(name + " used offscreen layers", 0, budget.saveLayers);
+    }
+
+    private static void layout(View view) {
+        view.measure(View.MeasureSpec.makeMeasureSpec(WIDTH, View.MeasureSpec.EXACTLY),
+                View.MeasureSpec.makeMeasureSpec(HEIGHT, View.MeasureSpec.EXACTLY));
+        view.layout(0, 0, WIDTH, HEIGHT);
+    }
+
+    /**
+     * 直接设置动画时间，不依赖Choreographer
+     */
+    private static void setElapsed(WaveView view, int frame) {
+        view.getRenderer().setAnimElapsedNanos(frame * FRAME_NANOS);
+    }
+
+    /**
+     * 48kHz录音一帧约800个采样
+     */
+    private static short[] pcm() {
+        short[] pcm = new short[800];
+        for (int i = 0; i < pcm.length; i++) pcm[i] = (short) ((i * 37) % 20000);
+        return pcm;
+    }
+
+    /**
+     * 进度经由ProgressMailbox在下一帧应用，这里推进主线程时钟让帧回调执行
+     */
+    private static void setProgress(WaveSeekBar view, long position) {
+        view.setProgress(position, WARMUP_FRAMES + FRAMES);
+        ShadowLooper.idleMainLooper(FRAME_NANOS, TimeUnit.NANOSECONDS);
+    }
+}